@@ -23,10 +23,10 @@ public class UiBus extends Bus {
 
 
     public UiBus() {
-        super(new UiThreadEnforcer());
+        this(DEFAULT);
     }
 
     public UiBus(@NonNull String tag) {
-        super(new UiThreadEnforcer(), tag);
+        super(new UiThreadEnforcer(), tag, BusExecutors.worker(), new LooperMainThreadSupport());
     }
 }
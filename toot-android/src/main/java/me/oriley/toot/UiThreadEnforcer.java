@@ -18,15 +18,15 @@
 package me.oriley.toot;
 
 import android.os.Looper;
-import android.support.annotation.NonNull;
 
+/**
+ * Confines access to the main thread. The main looper's thread is looked up once, so each check is a single thread
+ * comparison.
+ */
 @SuppressWarnings({"unused", "WeakerAccess"})
-public class UiThreadEnforcer implements ThreadEnforcer {
+public class UiThreadEnforcer extends ConfinedThreadEnforcer {
 
-    @Override
-    public void enforce(@NonNull Bus bus) {
-        if (Looper.myLooper() != Looper.getMainLooper()) {
-            throw new IllegalStateException("Event bus " + bus + " accessed from non-main thread " + Looper.myLooper());
-        }
+    public UiThreadEnforcer() {
+        super(Looper.getMainLooper().getThread());
     }
 }
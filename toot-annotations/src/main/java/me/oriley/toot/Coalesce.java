@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an event type where only the latest state matters. When a new event of the same class is posted while an
+ * older one is still waiting to reach a subscriber of the annotated type, the older one is replaced rather than both
+ * being delivered. Events already being delivered are not affected, and {@link ThreadMode#ASYNC} subscribers never
+ * coalesce.
+ */
+@SuppressWarnings("WeakerAccess")
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface Coalesce {
+}
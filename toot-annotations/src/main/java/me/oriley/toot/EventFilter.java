@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+/**
+ * Decides whether a subscriber receives an event, evaluated by the bus before the delivery is queued. Filters named
+ * by {@link Subscribe#filter()} must be concrete, static if nested, and accessible from the subscribing class' package,
+ * with a no argument constructor which is public, or not private when the filter is in that same package. A single
+ * instance is shared by every host of the subscribing class, so they should be stateless and thread safe.
+ */
+public interface EventFilter {
+
+    /**
+     * @param host  the registered object owning the subscriber method
+     * @param event the posted event, an instance of the subscribed type
+     * @return {@code true} to deliver the event to this host
+     */
+    boolean accept(Object host, Object event);
+}
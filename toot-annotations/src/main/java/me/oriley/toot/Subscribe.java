@@ -26,4 +26,21 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.SOURCE)
 @Target(ElementType.METHOD)
 public @interface Subscribe {
+
+    /**
+     * Thread the annotated method is invoked on, see {@link ThreadMode}.
+     */
+    ThreadMode threadMode() default ThreadMode.POSTING;
+
+    /**
+     * Subscribers with a higher priority receive each event before those with a lower one. Subscribers with equal
+     * priority are delivered to in registration order.
+     */
+    int priority() default 0;
+
+    /**
+     * Filter evaluated for each event before it is queued for this subscriber. {@link EventFilter} itself, the
+     * default, means no filtering.
+     */
+    Class<? extends EventFilter> filter() default EventFilter.class;
 }
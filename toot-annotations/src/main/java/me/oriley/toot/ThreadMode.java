@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+/**
+ * Thread a {@link Subscribe} method is invoked on.
+ */
+@SuppressWarnings("unused")
+public enum ThreadMode {
+
+    /**
+     * Invoked on the posting thread, or on the bus executor for an asynchronous bus. The default.
+     */
+    POSTING,
+
+    /**
+     * Invoked on the main thread, directly if the event was posted from it. Falls back to {@link #POSTING} when the
+     * bus has no main thread support, e.g. on a plain JVM.
+     */
+    MAIN,
+
+    /**
+     * Invoked on the bus executor, one event at a time and in post order for each subscriber.
+     */
+    BACKGROUND,
+
+    /**
+     * Invoked on the bus executor with no ordering, each delivery may run in parallel with any other.
+     */
+    ASYNC
+}
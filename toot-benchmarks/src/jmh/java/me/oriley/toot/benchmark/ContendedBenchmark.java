@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot.benchmark;
+
+import me.oriley.toot.Bus;
+import me.oriley.toot.ShardedBus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static me.oriley.toot.benchmark.Events.ShallowEvent;
+import static me.oriley.toot.benchmark.Events.StateEvent;
+
+/**
+ * Measures a register, post and unregister cycle from several threads sharing one bus, comparing a single
+ * {@link Bus} with a {@link ShardedBus}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class ContendedBenchmark {
+
+    @Param({"SINGLE", "SHARDED"})
+    public String bus;
+
+    private Bus mBus;
+    private Listener[] mListeners;
+
+    @Setup
+    public void setUp() {
+        mBus = "SHARDED".equals(bus) ? new ShardedBus() : new Bus();
+        mListeners = new Listener[100];
+        for (int i = 0; i < mListeners.length; i++) {
+            mListeners[i] = new Listener();
+            mBus.register(mListeners[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (Listener listener : mListeners) {
+            mBus.unregister(listener);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final Listener listener = new Listener();
+        final ShallowEvent shallowEvent = new ShallowEvent();
+        final StateEvent stateEvent = new StateEvent();
+    }
+
+    @Benchmark
+    public void registerPostUnregister(ThreadState state) {
+        mBus.register(state.listener);
+        mBus.post(state.shallowEvent);
+        mBus.post(state.stateEvent);
+        mBus.unregister(state.listener);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot.benchmark;
+
+import android.support.annotation.Nullable;
+
+@SuppressWarnings("WeakerAccess")
+public final class Events {
+
+    private Events() {
+        throw new IllegalAccessError("no instances");
+    }
+
+    public static class ShallowEvent {
+    }
+
+    public static class DeepEventBase {
+    }
+
+    public static class DeepEventLevel1 extends DeepEventBase {
+    }
+
+    public static class DeepEventLevel2 extends DeepEventLevel1 {
+    }
+
+    public static class DeepEventLevel3 extends DeepEventLevel2 {
+    }
+
+    public static class DeepEventLevel4 extends DeepEventLevel3 {
+    }
+
+    public static class DeepEvent extends DeepEventLevel4 {
+    }
+
+    public static class StateEvent {
+    }
+
+    public static class NestedEvent {
+
+        @Nullable
+        final NestedEvent next;
+
+        public NestedEvent(@Nullable NestedEvent next) {
+            this.next = next;
+        }
+    }
+}
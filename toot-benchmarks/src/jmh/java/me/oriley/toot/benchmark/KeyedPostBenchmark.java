@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot.benchmark;
+
+import me.oriley.toot.Bus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static me.oriley.toot.benchmark.Events.ShallowEvent;
+
+/**
+ * Compares posting to one of many hosts by key against posting to all of them and leaving each to discard the
+ * events which aren't meant for it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class KeyedPostBenchmark {
+
+    @Param({"100", "5000"})
+    public int hostCount;
+
+    private Bus mKeyedBus;
+    private Bus mBroadcastBus;
+    private ShallowEvent mEvent;
+    private Listener[] mListeners;
+    private int mNextKey;
+
+    @Setup
+    public void setUp() {
+        mKeyedBus = new Bus();
+        mBroadcastBus = new Bus();
+        mListeners = new Listener[hostCount];
+        for (int i = 0; i < hostCount; i++) {
+            mListeners[i] = new Listener();
+            mKeyedBus.register(mListeners[i], i);
+            mBroadcastBus.register(mListeners[i]);
+        }
+        mEvent = new ShallowEvent();
+    }
+
+    @Benchmark
+    public void postKeyed() {
+        mKeyedBus.post(mEvent, mNextKey++ % hostCount);
+    }
+
+    @Benchmark
+    public void postBroadcast() {
+        mBroadcastBus.post(mEvent);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot.benchmark;
+
+import android.support.annotation.NonNull;
+import me.oriley.toot.Bus;
+import me.oriley.toot.Subscribe;
+
+import static me.oriley.toot.benchmark.Events.NestedEvent;
+
+@SuppressWarnings("WeakerAccess")
+public class NestedListener {
+
+    @NonNull
+    private final Bus mBus;
+
+    public long received;
+
+    public NestedListener(@NonNull Bus bus) {
+        mBus = bus;
+    }
+
+    @Subscribe
+    public void onNestedEvent(NestedEvent event) {
+        received++;
+        if (event.next != null) {
+            mBus.post(event.next);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot.benchmark;
+
+import me.oriley.toot.Bus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static me.oriley.toot.benchmark.Events.NestedEvent;
+
+/**
+ * Measures posting from within a subscriber, where each nested post is queued and drained by the outermost
+ * dispatch loop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NestedPostBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int depth;
+
+    private Bus mBus;
+    private NestedListener mListener;
+    private NestedEvent mEvent;
+
+    @Setup
+    public void setUp() {
+        mBus = new Bus();
+        mListener = new NestedListener(mBus);
+        mBus.register(mListener);
+
+        NestedEvent event = null;
+        for (int i = 0; i < depth; i++) {
+            event = new NestedEvent(event);
+        }
+        mEvent = event;
+    }
+
+    @TearDown
+    public void tearDown() {
+        mBus.unregister(mListener);
+    }
+
+    @Benchmark
+    public long postNested() {
+        mBus.post(mEvent);
+        return mListener.received;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot.benchmark;
+
+import me.oriley.toot.Bus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static me.oriley.toot.benchmark.Events.DeepEvent;
+import static me.oriley.toot.benchmark.Events.ShallowEvent;
+
+/**
+ * Measures {@link Bus#post(Object)} fan-out for a fixed number of subscribers, posting either an event
+ * with no interesting superclasses or one at the bottom of a five level hierarchy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PostBenchmark {
+
+    @Param({"1", "10", "1000"})
+    public int subscribers;
+
+    @Param({"SHALLOW", "DEEP"})
+    public String hierarchy;
+
+    private Bus mBus;
+    private Object mEvent;
+    private Listener[] mListeners;
+
+    @Setup
+    public void setUp() {
+        mBus = new Bus();
+        mListeners = new Listener[subscribers];
+        for (int i = 0; i < subscribers; i++) {
+            mListeners[i] = new Listener();
+            mBus.register(mListeners[i]);
+        }
+        mEvent = "DEEP".equals(hierarchy) ? new DeepEvent() : new ShallowEvent();
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (Listener listener : mListeners) {
+            mBus.unregister(listener);
+        }
+    }
+
+    @Benchmark
+    public void post() {
+        mBus.post(mEvent);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot.benchmark;
+
+import me.oriley.toot.Bus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures registering a subscriber for a type which already has a producer, so every cycle replays the
+ * produced event into the new subscriber.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProducerReplayBenchmark {
+
+    private Bus mBus;
+    private StateProducer mProducer;
+    private Listener mListener;
+
+    @Setup
+    public void setUp() {
+        mBus = new Bus();
+        mProducer = new StateProducer();
+        mListener = new Listener();
+        mBus.register(mProducer);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mBus.unregister(mProducer);
+    }
+
+    @Benchmark
+    public long registerWithReplay() {
+        mBus.register(mListener);
+        mBus.unregister(mListener);
+        return mListener.received;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot.benchmark;
+
+import me.oriley.toot.Bus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a register/unregister cycle of a single host while other hosts of the same type are already
+ * subscribed to the bus.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RegisterBenchmark {
+
+    @Param({"0", "100", "10000"})
+    public int existingSubscribers;
+
+    private Bus mBus;
+    private Listener mListener;
+    private Listener[] mExisting;
+
+    @Setup
+    public void setUp() {
+        mBus = new Bus();
+        mListener = new Listener();
+        mExisting = new Listener[existingSubscribers];
+        for (int i = 0; i < existingSubscribers; i++) {
+            mExisting[i] = new Listener();
+            mBus.register(mExisting[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (Listener listener : mExisting) {
+            mBus.unregister(listener);
+        }
+    }
+
+    @Benchmark
+    public void registerUnregister() {
+        mBus.register(mListener);
+        mBus.unregister(mListener);
+    }
+}
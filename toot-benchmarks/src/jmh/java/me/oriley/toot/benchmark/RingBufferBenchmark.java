@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot.benchmark;
+
+import me.oriley.toot.RingBufferBus;
+import me.oriley.toot.WaitStrategy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static me.oriley.toot.benchmark.Events.ShallowEvent;
+
+/**
+ * Measures the posting side latency of {@link RingBufferBus} for each {@link WaitStrategy}, with a single consumer
+ * dispatching to ten subscribers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RingBufferBenchmark {
+
+    @Param({"BUSY_SPIN", "YIELD", "PARK"})
+    public WaitStrategy waitStrategy;
+
+    private RingBufferBus mBus;
+    private ShallowEvent mEvent;
+    private Listener[] mListeners;
+
+    @Setup
+    public void setUp() {
+        mBus = new RingBufferBus("benchmark", 4096, 1, waitStrategy);
+        mListeners = new Listener[10];
+        for (int i = 0; i < mListeners.length; i++) {
+            mListeners[i] = new Listener();
+            mBus.register(mListeners[i]);
+        }
+        mEvent = new ShallowEvent();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        mBus.shutdown();
+        mBus.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public void post() {
+        mBus.post(mEvent);
+    }
+}
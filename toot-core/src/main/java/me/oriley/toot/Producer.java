@@ -27,7 +27,7 @@ public abstract class Producer {
     @NonNull
     public final WeakReference<Object> host;
 
-    private boolean mValid = true;
+    private volatile boolean mValid = true;
 
 
     public Producer(@NonNull Object host) {
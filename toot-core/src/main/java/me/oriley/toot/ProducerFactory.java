@@ -34,5 +34,5 @@ public abstract class ProducerFactory {
     }
 
     @NonNull
-    protected abstract Producer getProducer(@NonNull final Object host);
+    protected abstract Producer getProducer(@NonNull final Object host, int index);
 }
@@ -17,6 +17,7 @@
 package me.oriley.toot;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import java.lang.ref.WeakReference;
 
@@ -26,11 +27,38 @@ public abstract class Subscriber {
     @NonNull
     public final WeakReference<Object> host;
 
-    private boolean mValid = true;
+    @NonNull
+    private final Class<?> mEventClass;
+
+    @NonNull
+    private final ThreadMode mThreadMode;
+
+    private final int mPriority;
+
+    private final boolean mCoalescing;
+
+    @Nullable
+    private final EventFilter mFilter;
+
+    // Set by the bus for hosts registered with a filter, before the subscriber is published
+    @Nullable
+    private EventFilter mHostFilter;
 
+    private volatile boolean mValid = true;
 
-    public Subscriber(@NonNull Object host) {
+
+    public Subscriber(@NonNull Object host,
+                      @NonNull Class<?> eventClass,
+                      @NonNull ThreadMode threadMode,
+                      int priority,
+                      boolean coalescing,
+                      @Nullable EventFilter filter) {
         this.host = new WeakReference<>(host);
+        mEventClass = eventClass;
+        mThreadMode = threadMode;
+        mPriority = priority;
+        mCoalescing = coalescing;
+        mFilter = filter;
     }
 
     void dispatchEvent(@NonNull Object event) {
@@ -42,6 +70,46 @@ public abstract class Subscriber {
 
     protected abstract void onEvent(@NonNull Object host, @NonNull final Object event);
 
+    @NonNull
+    Class<?> getEventClass() {
+        return mEventClass;
+    }
+
+    @NonNull
+    ThreadMode getThreadMode() {
+        return mThreadMode;
+    }
+
+    int getPriority() {
+        return mPriority;
+    }
+
+    /**
+     * Whether the subscribed event type is annotated with {@link Coalesce}.
+     */
+    boolean isCoalescing() {
+        return mCoalescing;
+    }
+
+    void setHostFilter(@Nullable EventFilter hostFilter) {
+        mHostFilter = hostFilter;
+    }
+
+    /**
+     * Whether the subscriber's {@link Subscribe#filter()} and any filter its host was registered with accept the
+     * event.
+     */
+    boolean accepts(@NonNull Object event) {
+        if (mFilter == null && mHostFilter == null) {
+            return true;
+        }
+
+        Object object = host.get();
+        return object != null
+                && (mFilter == null || mFilter.accept(object, event))
+                && (mHostFilter == null || mHostFilter.accept(object, event));
+    }
+
     boolean isValid() {
         return mValid && host.get() != null;
     }
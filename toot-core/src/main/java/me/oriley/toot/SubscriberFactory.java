@@ -34,5 +34,5 @@ public abstract class SubscriberFactory {
     }
 
     @NonNull
-    protected abstract Subscriber getSubscriber(@NonNull final Object host);
+    protected abstract Subscriber getSubscriber(@NonNull final Object host, int index);
 }
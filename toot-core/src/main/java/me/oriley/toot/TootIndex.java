@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.*;
+
+/**
+ * Aggregated lookup of generated factories for one compilation, generated by the processor when the
+ * {@code tootIndex} option is set. Every class in {@link #mIndexedClasses} has its factories resolved at compile
+ * time, so a {@code null} factory for an indexed class is a definitive miss rather than a reason to fall back to
+ * reflection.
+ */
+@SuppressWarnings("WeakerAccess")
+public abstract class TootIndex {
+
+    @NonNull
+    protected final Set<Class<?>> mIndexedClasses = new HashSet<>();
+
+    @NonNull
+    protected final Set<Class<?>> mEventClasses = new HashSet<>();
+
+    @NonNull
+    protected final Map<Class<?>, SubscriberFactory> mSubscriberFactories = new HashMap<>();
+
+    @NonNull
+    protected final Map<Class<?>, ProducerFactory> mProducerFactories = new HashMap<>();
+
+    final boolean isIndexed(@NonNull Class<?> cls) {
+        return mIndexedClasses.contains(cls);
+    }
+
+    @NonNull
+    final Set<Class<?>> getIndexedClasses() {
+        return mIndexedClasses;
+    }
+
+    /**
+     * Every accessible event type subscribed to or produced by the indexed classes.
+     */
+    @NonNull
+    final Set<Class<?>> getEventClasses() {
+        return mEventClasses;
+    }
+
+    @Nullable
+    final SubscriberFactory getSubscriberFactory(@NonNull Class<?> cls) {
+        return mSubscriberFactories.get(cls);
+    }
+
+    @Nullable
+    final ProducerFactory getProducerFactory(@NonNull Class<?> cls) {
+        return mProducerFactories.get(cls);
+    }
+}
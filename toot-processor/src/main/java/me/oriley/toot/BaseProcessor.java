@@ -110,6 +110,11 @@ abstract class BaseProcessor extends AbstractProcessor {
         return modifiers.contains(Modifier.PRIVATE);
     }
 
+    protected boolean isPublic(@NonNull Element element) {
+        Set<Modifier> modifiers = element.getModifiers();
+        return modifiers.contains(Modifier.PUBLIC);
+    }
+
     protected boolean isStatic(@NonNull Element element) {
         Set<Modifier> modifiers = element.getModifiers();
         return modifiers.contains(Modifier.STATIC);
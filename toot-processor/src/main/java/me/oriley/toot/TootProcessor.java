@@ -23,7 +23,10 @@ import com.squareup.javapoet.*;
 import javax.annotation.processing.*;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.*;
+import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.util.*;
@@ -34,22 +37,38 @@ public final class TootProcessor extends BaseProcessor {
 
     private static final String GET_SUBSCRIBER = "getSubscriber";
     private static final String GET_PRODUCER = "getProducer";
+    private static final String ON_EVENT = "onEvent";
+    private static final String PRODUCE_EVENT = "produceEvent";
+    private static final String SUBSCRIBER_PREFIX = "Subscriber";
+    private static final String PRODUCER_PREFIX = "Producer";
     private static final String OBJECT = "object";
+    private static final String INDEX = "index";
     private static final String HOST = "host";
-    private static final String CAST_HOST = "castHost";
     private static final String EVENT = "event";
     private static final String EVENT_CLASS = "eventClass";
-    private static final String CLS = "cls";
     private static final String VALUE = "value";
     private static final String UNCHECKED = "unchecked";
+    private static final String FILTER = "FILTER";
+    private static final String OPTION_INDEX = "tootIndex";
 
     @NonNull
     private Filer mFiler;
 
+    @Nullable
+    private String mIndexName;
+
+    private boolean mIndexWritten;
+
     @Override
     public synchronized void init(ProcessingEnvironment env) {
         super.init(env);
         mFiler = env.getFiler();
+        mIndexName = env.getOptions().get(OPTION_INDEX);
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(OPTION_INDEX);
     }
 
     @Override
@@ -82,6 +101,15 @@ public final class TootProcessor extends BaseProcessor {
                 String packageName = getPackageName(typeElement);
                 writeToFile(packageName, generateProducerFactory(typeElement, produceMethods.get(typeElement)));
             }
+
+            if (mIndexName != null && !mIndexWritten && (!subscribeMethods.isEmpty() || !produceMethods.isEmpty())) {
+                int separator = mIndexName.lastIndexOf('.');
+                String packageName = separator > 0 ? mIndexName.substring(0, separator) : "";
+                String className = mIndexName.substring(separator + 1);
+                writeToFile(packageName, generateIndex(env, packageName, className, subscribeMethods,
+                        produceMethods));
+                mIndexWritten = true;
+            }
         } catch (TootProcessorException e) {
             mMessager.printMessage(ERROR, e.getMessage());
             return true;
@@ -97,38 +125,53 @@ public final class TootProcessor extends BaseProcessor {
         String packageName = getPackageName(typeElement);
         String className = getClassName(typeElement, packageName);
 
-        // Constructor
+        // Class builder
+        TypeSpec.Builder typeSpecBuilder = TypeSpec.classBuilder(className + SubscriberFactory.CLASS_SUFFIX)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .superclass(SubscriberFactory.class);
+
+        // Constructor, create method and one subscriber class per event type, sharing the same index
         CodeBlock.Builder initBuilder = CodeBlock.builder()
                 .add("$T.addAll(mSubscribedClasses", Collections.class);
-        for (TypeMirror typeMirror : subscriberMethods.keySet()) {
-            initBuilder.add(", $T.class", typeMirror);
+        CodeBlock.Builder switchBuilder = CodeBlock.builder()
+                .beginControlFlow("switch ($N)", INDEX);
+
+        int index = 0;
+        for (Map.Entry<TypeMirror, List<ExecutableElement>> entry : subscriberMethods.entrySet()) {
+            ExecutableElement method = getSingleMethod(entry, "subscriber");
+            String subscriberName = SUBSCRIBER_PREFIX + index;
+
+            initBuilder.add(", $T.class", entry.getKey());
+            switchBuilder.add("case $L:\n", index)
+                    .indent()
+                    .addStatement("return new $N($N)", subscriberName, OBJECT)
+                    .unindent();
+            typeSpecBuilder.addType(generateSubscriber(subscriberName, typeElement, entry.getKey(), method));
+            index++;
         }
+
         initBuilder.add(");\n");
+        switchBuilder.add("default:\n")
+                .indent()
+                .addStatement("throw new $T($S + $N)", IllegalArgumentException.class, "Invalid subscriber index: ",
+                        INDEX)
+                .unindent()
+                .endControlFlow();
 
         MethodSpec.Builder constructor = MethodSpec.constructorBuilder()
                 .addModifiers(Modifier.PUBLIC)
                 .addCode(initBuilder.build());
 
-        // Class builder
-        TypeSpec.Builder typeSpecBuilder = TypeSpec.classBuilder(className + SubscriberFactory.CLASS_SUFFIX)
-                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
-                .addMethod(constructor.build())
-                .superclass(SubscriberFactory.class);
-
-        // Create method
         MethodSpec.Builder methodSpecBuilder = MethodSpec.methodBuilder(GET_SUBSCRIBER)
                 .addModifiers(Modifier.PROTECTED)
-                .addAnnotation(Nullable.class)
+                .addAnnotation(NonNull.class)
                 .addAnnotation(Override.class)
-                .addCode(generateAbstractSubscriber(typeElement, subscriberMethods))
+                .addParameter(objectParameter(OBJECT))
+                .addParameter(int.class, INDEX, Modifier.FINAL)
+                .addCode(switchBuilder.build())
                 .returns(Subscriber.class);
 
-        // Type parameter
-        ParameterSpec.Builder parameterSpecBuilder =
-                ParameterSpec.builder(TypeName.get(Object.class)
-                        .annotated(AnnotationSpec.builder(NonNull.class).build()), OBJECT, Modifier.FINAL);
-
-        return typeSpecBuilder.addMethod(methodSpecBuilder.addParameter(parameterSpecBuilder.build()).build()).build();
+        return typeSpecBuilder.addMethod(constructor.build()).addMethod(methodSpecBuilder.build()).build();
     }
 
     @NonNull
@@ -138,102 +181,348 @@ public final class TootProcessor extends BaseProcessor {
         String packageName = getPackageName(typeElement);
         String className = getClassName(typeElement, packageName);
 
-        // Constructor
+        // Class builder
+        TypeSpec.Builder typeSpecBuilder = TypeSpec.classBuilder(className + ProducerFactory.CLASS_SUFFIX)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .superclass(ProducerFactory.class);
+
+        // Constructor, create method and one producer class per event type, sharing the same index
         CodeBlock.Builder initBuilder = CodeBlock.builder()
                 .add("$T.addAll(mProducedClasses", Collections.class);
-        for (TypeMirror typeMirror : producerMethods.keySet()) {
-            initBuilder.add(", $T.class", typeMirror);
+        CodeBlock.Builder switchBuilder = CodeBlock.builder()
+                .beginControlFlow("switch ($N)", INDEX);
+
+        int index = 0;
+        for (Map.Entry<TypeMirror, List<ExecutableElement>> entry : producerMethods.entrySet()) {
+            ExecutableElement method = getSingleMethod(entry, "producer");
+            String producerName = PRODUCER_PREFIX + index;
+
+            initBuilder.add(", $T.class", entry.getKey());
+            switchBuilder.add("case $L:\n", index)
+                    .indent()
+                    .addStatement("return new $N($N)", producerName, OBJECT)
+                    .unindent();
+            typeSpecBuilder.addType(generateProducer(producerName, typeElement, method));
+            index++;
         }
+
         initBuilder.add(");\n");
+        switchBuilder.add("default:\n")
+                .indent()
+                .addStatement("throw new $T($S + $N)", IllegalArgumentException.class, "Invalid producer index: ",
+                        INDEX)
+                .unindent()
+                .endControlFlow();
 
         MethodSpec.Builder constructor = MethodSpec.constructorBuilder()
                 .addModifiers(Modifier.PUBLIC)
                 .addCode(initBuilder.build());
 
-        // Class builder
-        TypeSpec.Builder typeSpecBuilder = TypeSpec.classBuilder(className + ProducerFactory.CLASS_SUFFIX)
-                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
-                .addMethod(constructor.build())
-                .superclass(ProducerFactory.class);
-
-        // Create method
         MethodSpec.Builder methodSpecBuilder = MethodSpec.methodBuilder(GET_PRODUCER)
                 .addModifiers(Modifier.PROTECTED)
-                .addAnnotation(Nullable.class)
+                .addAnnotation(NonNull.class)
+                .addAnnotation(Override.class)
+                .addParameter(objectParameter(OBJECT))
+                .addParameter(int.class, INDEX, Modifier.FINAL)
+                .addCode(switchBuilder.build())
+                .returns(Producer.class);
+
+        return typeSpecBuilder.addMethod(constructor.build()).addMethod(methodSpecBuilder.build()).build();
+    }
+
+    @NonNull
+    private TypeSpec generateSubscriber(@NonNull String subscriberName,
+                                        @NonNull TypeElement hostType,
+                                        @NonNull TypeMirror eventType,
+                                        @NonNull ExecutableElement method) {
+        Subscribe annotation = method.getAnnotation(Subscribe.class);
+        TypeElement filterType = getFilterType(method);
+
+        TypeSpec.Builder subscriber = TypeSpec.classBuilder(subscriberName)
+                .addModifiers(Modifier.STATIC, Modifier.FINAL)
+                .superclass(Subscriber.class);
+
+        // One filter instance shared by every host
+        if (filterType != null) {
+            subscriber.addField(FieldSpec.builder(EventFilter.class, FILTER)
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("new $T()", ClassName.get(filterType))
+                    .build());
+        }
+
+        MethodSpec constructor = MethodSpec.constructorBuilder()
+                .addParameter(objectParameter(HOST))
+                .addStatement("super($N, $T.class, $T.$L, $L, $L, $L)", HOST, eventType, ThreadMode.class,
+                        annotation.threadMode().name(), annotation.priority(), isCoalesced(eventType),
+                        filterType != null ? FILTER : null)
+                .build();
+
+        // Direct call, so each delivery is a single monomorphic invocation
+        MethodSpec.Builder onEvent = MethodSpec.methodBuilder(ON_EVENT)
+                .addModifiers(Modifier.PROTECTED)
+                .addAnnotation(Override.class)
+                .addParameter(objectParameter(HOST))
+                .addParameter(objectParameter(EVENT))
+                .addStatement("(($T) $N).$N(($T) $N)", ClassName.get(hostType), HOST, method.getSimpleName(),
+                        eventType, EVENT);
+
+        // Generic events are cast to their raw type
+        if (!mTypes.isSameType(method.getParameters().get(0).asType(), eventType)) {
+            onEvent.addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                    .addMember(VALUE, "$S", UNCHECKED).build());
+        }
+
+        return subscriber.addMethod(constructor)
+                .addMethod(onEvent.build())
+                .build();
+    }
+
+    /**
+     * The {@link Subscribe#filter()} of a subscriber method, or {@code null} if it has none.
+     */
+    @Nullable
+    private TypeElement getFilterType(@NonNull ExecutableElement method) {
+        TypeElement filterType;
+        try {
+            filterType = mElements.getTypeElement(method.getAnnotation(Subscribe.class).filter().getCanonicalName());
+        } catch (MirroredTypeException e) {
+            filterType = (TypeElement) mTypes.asElement(e.getTypeMirror());
+        }
+        return filterType.getQualifiedName().contentEquals(EventFilter.class.getCanonicalName()) ? null : filterType;
+    }
+
+    private void validateFilter(@NonNull ExecutableElement method,
+                                @NonNull TypeElement hostType) throws TootProcessorException {
+        TypeElement filterType = getFilterType(method);
+        if (filterType == null) {
+            return;
+        }
+
+        String methodName = method.getSimpleName().toString();
+        if (filterType.getKind() != ElementKind.CLASS || filterType.getModifiers().contains(Modifier.ABSTRACT)) {
+            throw new TootProcessorException("Filter must be a concrete class: " + filterType + " in " + methodName);
+        } else if (filterType.getNestingKind() == NestingKind.MEMBER && !isStatic(filterType)) {
+            throw new TootProcessorException("Filter must be static: " + filterType + " in " + methodName);
+        }
+
+        String packageName = getPackageName(hostType);
+        if (!isAccessibleFrom(filterType, packageName)) {
+            throw new TootProcessorException("Filter is not accessible: " + filterType + " in " + methodName);
+        }
+
+        boolean samePackage = packageName.equals(getPackageName(filterType));
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(filterType.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()
+                    && (isPublic(constructor) || (samePackage && !isPrivate(constructor)))) {
+                return;
+            }
+        }
+        throw new TootProcessorException("Filter must have an accessible no argument constructor: " + filterType
+                + " in " + methodName);
+    }
+
+    private boolean isCoalesced(@NonNull TypeMirror eventType) {
+        Element element = mTypes.asElement(eventType);
+        return element != null && element.getAnnotation(Coalesce.class) != null;
+    }
+
+    @NonNull
+    private TypeSpec generateProducer(@NonNull String producerName,
+                                      @NonNull TypeElement hostType,
+                                      @NonNull ExecutableElement method) {
+        MethodSpec constructor = MethodSpec.constructorBuilder()
+                .addParameter(objectParameter(HOST))
+                .addStatement("super($N)", HOST)
+                .build();
+
+        TypeVariableName typeVariable = TypeVariableName.get("E");
+        MethodSpec produceEvent = MethodSpec.methodBuilder(PRODUCE_EVENT)
+                .addModifiers(Modifier.PROTECTED)
                 .addAnnotation(Override.class)
+                .addAnnotation(Nullable.class)
                 .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
                         .addMember(VALUE, "$S", UNCHECKED).build())
-                .addCode(generateAbstractProducer(typeElement, producerMethods))
-                .returns(Producer.class);
+                .addTypeVariable(typeVariable)
+                .addParameter(objectParameter(HOST))
+                .addParameter(ParameterizedTypeName.get(ClassName.get(Class.class), typeVariable)
+                        .annotated(AnnotationSpec.builder(NonNull.class).build()), EVENT_CLASS, Modifier.FINAL)
+                .addStatement("return (E) (($T) $N).$N()", ClassName.get(hostType), HOST, method.getSimpleName())
+                .returns(typeVariable)
+                .build();
+
+        return TypeSpec.classBuilder(producerName)
+                .addModifiers(Modifier.STATIC, Modifier.FINAL)
+                .superclass(Producer.class)
+                .addMethod(constructor)
+                .addMethod(produceEvent)
+                .build();
+    }
 
-        // Type parameter
-        ParameterSpec.Builder parameterSpecBuilder =
-                ParameterSpec.builder(TypeName.get(Object.class)
-                        .annotated(AnnotationSpec.builder(NonNull.class).build()), OBJECT, Modifier.FINAL);
+    @NonNull
+    private static ParameterSpec objectParameter(@NonNull String name) {
+        return ParameterSpec.builder(TypeName.get(Object.class)
+                .annotated(AnnotationSpec.builder(NonNull.class).build()), name, Modifier.FINAL).build();
+    }
 
-        return typeSpecBuilder.addMethod(methodSpecBuilder.addParameter(parameterSpecBuilder.build()).build()).build();
+    @NonNull
+    private static ExecutableElement getSingleMethod(@NonNull Map.Entry<TypeMirror, List<ExecutableElement>> entry,
+                                                     @NonNull String kind) throws TootProcessorException {
+        List<ExecutableElement> methods = entry.getValue();
+        if (methods.size() != 1) {
+            throw new TootProcessorException("Invalid " + kind + " count [" + methods.size() + "] for eventType: " +
+                    entry.getKey());
+        }
+        return methods.get(0);
     }
 
     @NonNull
-    private CodeBlock generateAbstractSubscriber(@NonNull TypeElement hostType,
-                                                 @NonNull EventMethodsMap subscriberMethods) throws TootProcessorException {
-        CodeBlock.Builder builder = CodeBlock.builder()
-                .add("return new $T($N) {\n",  Subscriber.class, OBJECT)
-                .add("    @$T\n", Override.class)
-                .add("    protected void onEvent(@$T final $T $N, @$T final $T $N) {\n", NonNull.class, Object.class,
-                        HOST, NonNull.class, Object.class, EVENT)
-                .add("        $T $N = ($T) $N;\n", hostType, CAST_HOST, hostType, HOST)
-                .add("        $T $N = $N.getClass();\n", Class.class, CLS, EVENT);
-
-        boolean first = true;
-        for (Map.Entry<TypeMirror, List<ExecutableElement>> entry : subscriberMethods.entrySet()) {
-            List<ExecutableElement> methods = entry.getValue();
-            if (methods.size() != 1) {
-                throw new TootProcessorException("Invalid subscriber count [" + methods.size() + "] for eventType: " +
-                        entry.getKey().getKind().name());
+    private TypeSpec generateIndex(@NonNull RoundEnvironment env,
+                                   @NonNull String packageName,
+                                   @NonNull String className,
+                                   @NonNull Map<TypeElement, EventMethodsMap> subscribeMethods,
+                                   @NonNull Map<TypeElement, EventMethodsMap> produceMethods) {
+        Set<TypeElement> subscriberTypes = subscribeMethods.keySet();
+        Set<TypeElement> producerTypes = produceMethods.keySet();
+        Set<TypeElement> hostTypes = new LinkedHashSet<>(subscriberTypes);
+        hostTypes.addAll(producerTypes);
+
+        // Every class inheriting from a host plus its interesting superclasses, so the runtime never has to probe
+        // for missing factories
+        Set<TypeElement> indexedTypes = new LinkedHashSet<>();
+        for (TypeElement hostType : hostTypes) {
+            collectIndexedTypes(hostType, packageName, indexedTypes);
+        }
+        for (TypeElement type : ElementFilter.typesIn(env.getRootElements())) {
+            collectHostSubclasses(type, hostTypes, packageName, indexedTypes);
+        }
+
+        // Subscribed and produced event types, listed so the runtime can warm its caches up front
+        Set<TypeElement> eventTypes = new LinkedHashSet<>();
+        collectEventTypes(subscribeMethods.values(), packageName, eventTypes);
+        collectEventTypes(produceMethods.values(), packageName, eventTypes);
+
+        // Constructor
+        CodeBlock.Builder initBuilder = CodeBlock.builder()
+                .add("$T.addAll(mIndexedClasses", Collections.class);
+        for (TypeElement indexedType : indexedTypes) {
+            initBuilder.add(", $T.class", ClassName.get(indexedType));
+        }
+        initBuilder.add(");\n");
+
+        if (!eventTypes.isEmpty()) {
+            initBuilder.add("$T.addAll(mEventClasses", Collections.class);
+            for (TypeElement eventType : eventTypes) {
+                initBuilder.add(", $T.class", ClassName.get(eventType));
+            }
+            initBuilder.add(");\n");
+        }
+
+        for (TypeElement indexedType : indexedTypes) {
+            ClassName subscriberFactory = findFactory(indexedType, SubscriberFactory.CLASS_SUFFIX, subscriberTypes);
+            if (subscriberFactory != null) {
+                initBuilder.addStatement("mSubscriberFactories.put($T.class, new $T())",
+                        ClassName.get(indexedType), subscriberFactory);
             }
+            ClassName producerFactory = findFactory(indexedType, ProducerFactory.CLASS_SUFFIX, producerTypes);
+            if (producerFactory != null) {
+                initBuilder.addStatement("mProducerFactories.put($T.class, new $T())",
+                        ClassName.get(indexedType), producerFactory);
+            }
+        }
+
+        MethodSpec.Builder constructor = MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PUBLIC)
+                .addCode(initBuilder.build());
+
+        return TypeSpec.classBuilder(className)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addMethod(constructor.build())
+                .superclass(TootIndex.class)
+                .build();
+    }
 
-            ExecutableElement method = methods.get(0);
-            TypeMirror typeMirror = entry.getKey();
-            builder.add(first ? "        if (" : "        } else if (")
-                    .add("$N.equals($T.class)) {\n", CLS, typeMirror)
-                    .add("            $N.$N(($T) event);\n", CAST_HOST, method.getSimpleName(), typeMirror);
-            first = false;
+    private void collectEventTypes(@NonNull Collection<EventMethodsMap> methodMaps,
+                                   @NonNull String packageName,
+                                   @NonNull Set<TypeElement> eventTypes) {
+        for (EventMethodsMap methods : methodMaps) {
+            for (TypeMirror eventType : methods.keySet()) {
+                if (eventType.getKind() == TypeKind.DECLARED) {
+                    TypeElement element = (TypeElement) mTypes.asElement(eventType);
+                    if (isAccessibleFrom(element, packageName)) {
+                        eventTypes.add(element);
+                    }
+                }
+            }
         }
+    }
+
+    private void collectIndexedTypes(@NonNull TypeElement type,
+                                     @NonNull String packageName,
+                                     @NonNull Set<TypeElement> indexedTypes) {
+        TypeElement current = type;
+        while (current != null) {
+            String name = current.getQualifiedName().toString();
+            if (name.startsWith("java.") || name.startsWith("android.")) {
+                break;
+            }
 
-        return builder.add("        }\n").add("    }\n").add("};\n").build();
+            // Classes the index can't reference are left to reflective lookup at runtime
+            if (isAccessibleFrom(current, packageName)) {
+                indexedTypes.add(current);
+            }
+
+            TypeMirror superType = current.getSuperclass();
+            current = superType.getKind() == TypeKind.DECLARED ? (TypeElement) mTypes.asElement(superType) : null;
+        }
     }
 
-    @NonNull
-    private CodeBlock generateAbstractProducer(@NonNull TypeElement hostType,
-                                               @NonNull EventMethodsMap producerMethods) throws TootProcessorException {
-        CodeBlock.Builder builder = CodeBlock.builder()
-                .add("return new $T($N) {\n",  Producer.class, OBJECT)
-                .add("    @$T\n", Override.class)
-                .add("    @$T\n", Nullable.class)
-                .add("    protected <E> E produceEvent(@$T final $T $N, @$T final $T<E> $N) {\n",
-                        NonNull.class, Object.class, HOST, NonNull.class, Class.class, EVENT_CLASS)
-                .add("        $T $N = ($T) $N;\n", hostType, CAST_HOST, hostType, HOST);
-
-        boolean first = true;
-        for (Map.Entry<TypeMirror, List<ExecutableElement>> entry : producerMethods.entrySet()) {
-            List<ExecutableElement> methods = entry.getValue();
-            if (methods.size() != 1) {
-                throw new TootProcessorException("Invalid producer count [" + methods.size() + "] for eventType: " +
-                        entry.getKey().getKind().name());
+    private void collectHostSubclasses(@NonNull TypeElement type,
+                                       @NonNull Set<TypeElement> hostTypes,
+                                       @NonNull String packageName,
+                                       @NonNull Set<TypeElement> indexedTypes) {
+        if (type.getKind() == ElementKind.CLASS && !indexedTypes.contains(type)) {
+            TypeMirror superType = type.getSuperclass();
+            while (superType.getKind() == TypeKind.DECLARED) {
+                TypeElement superElement = (TypeElement) mTypes.asElement(superType);
+                if (hostTypes.contains(superElement)) {
+                    collectIndexedTypes(type, packageName, indexedTypes);
+                    break;
+                }
+                superType = superElement.getSuperclass();
             }
+        }
 
-            ExecutableElement method = methods.get(0);
-            TypeMirror typeMirror = entry.getKey();
-            builder.add(first ? "        if (" : "        } else if (")
-                    .add("$N.equals($T.class)) {\n", EVENT_CLASS, typeMirror)
-                    .add("            return (E) $N.$N();\n", CAST_HOST, method.getSimpleName());
-            first = false;
+        for (TypeElement memberType : ElementFilter.typesIn(type.getEnclosedElements())) {
+            collectHostSubclasses(memberType, hostTypes, packageName, indexedTypes);
         }
-        builder.add("        } else {\n")
-                .add("            return null;\n");
+    }
 
-        return builder.add("        }\n").add("    }\n").add("};\n").build();
+    private boolean isAccessibleFrom(@NonNull TypeElement type, @NonNull String packageName) {
+        boolean samePackage = packageName.equals(getPackageName(type));
+        Element element = type;
+        while (element instanceof TypeElement) {
+            NestingKind nestingKind = ((TypeElement) element).getNestingKind();
+            if (nestingKind == NestingKind.LOCAL || nestingKind == NestingKind.ANONYMOUS) {
+                return false;
+            } else if (isPrivate(element) || (!samePackage && !isPublic(element))) {
+                return false;
+            }
+            element = element.getEnclosingElement();
+        }
+        return true;
+    }
+
+    @Nullable
+    private ClassName findFactory(@NonNull TypeElement type, @NonNull String suffix, @NonNull Set<TypeElement> generated) {
+        String packageName = getPackageName(type);
+        String factoryName = getClassName(type, packageName) + suffix;
+        if (generated.contains(type)) {
+            return ClassName.get(packageName, factoryName);
+        }
+
+        // Factories compiled earlier, e.g. for a superclass in a library module
+        String qualifiedName = packageName.isEmpty() ? factoryName : packageName + "." + factoryName;
+        return mElements.getTypeElement(qualifiedName) != null ? ClassName.get(packageName, factoryName) : null;
     }
 
     @NonNull
@@ -300,7 +589,8 @@ public final class TootProcessor extends BaseProcessor {
                 parentType = findEnclosingElement(parentType);
             }
 
-            final TypeMirror eventType = subscribers ? parameters.get(0).asType() : returnType;
+            // Generic events are dispatched by their raw class
+            final TypeMirror eventType = mTypes.erasure(subscribers ? parameters.get(0).asType() : returnType);
 
             EventMethodsMap methodsInClass = methodsByClass.get(type);
             if (methodsInClass == null) {
@@ -314,6 +604,9 @@ public final class TootProcessor extends BaseProcessor {
                 methodsInClass.put(eventType, methodsByType);
             }
 
+            if (subscribers) {
+                validateFilter(method, type);
+            }
             methodsByType.add(method);
         }
 
@@ -342,6 +635,6 @@ public final class TootProcessor extends BaseProcessor {
         }
     }
 
-    // Just to make the code more readable
-    private static final class EventMethodsMap extends HashMap<TypeMirror, List<ExecutableElement>> {}
+    // Just to make the code more readable, ordered so generated indices follow declaration order
+    private static final class EventMethodsMap extends LinkedHashMap<TypeMirror, List<ExecutableElement>> {}
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Bus which hands deliveries to an {@link Executor} instead of invoking subscribers on the posting thread. Each
+ * subscriber receives its events in the order they were posted, while different subscribers (including separate
+ * handler methods on the same host) may run in parallel. {@link ThreadMode#POSTING} subscribers are treated as
+ * {@link ThreadMode#BACKGROUND}.
+ * <p>
+ * Subscribers which block should be given {@link BusExecutors#blocking()}, which drains each subscriber's queue on a
+ * virtual thread where the runtime supports them, rather than the default pool of one thread per core.
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class AsyncBus extends Bus {
+
+    public AsyncBus() {
+        this(BusExecutors.worker());
+    }
+
+    public AsyncBus(@NonNull String tag) {
+        this(BusExecutors.worker(), ThreadEnforcer.ANY, tag);
+    }
+
+    public AsyncBus(@NonNull Executor executor) {
+        this(executor, ThreadEnforcer.ANY, DEFAULT);
+    }
+
+    public AsyncBus(@NonNull Executor executor, @NonNull ThreadEnforcer enforcer, @NonNull String tag) {
+        this(executor, enforcer, tag, null);
+    }
+
+    public AsyncBus(@NonNull Executor executor,
+                    @NonNull ThreadEnforcer enforcer,
+                    @NonNull String tag,
+                    @Nullable MainThreadSupport mainThreadSupport) {
+        super(enforcer, tag, executor, mainThreadSupport, ThreadMode.BACKGROUND);
+    }
+}
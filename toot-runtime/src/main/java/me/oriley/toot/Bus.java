@@ -21,26 +21,46 @@ package me.oriley.toot;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 @SuppressWarnings("WeakerAccess")
 public class Bus {
 
-    private static final String DEFAULT = "default-bus";
+    static final String DEFAULT = "default-bus";
     private static final boolean DEBUG = false;
 
     @NonNull
-    private final ConcurrentMap<Class<?>, Set<Subscriber>> mSubscribers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, SubscriberArray> mSubscribers = new ConcurrentHashMap<>();
+
+    @NonNull
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Object, SubscriberArray>> mKeyedSubscribers =
+            new ConcurrentHashMap<>();
 
     @NonNull
     private final ConcurrentMap<Class<?>, Producer> mProducers = new ConcurrentHashMap<>();
 
     @NonNull
-    private final ConcurrentMap<Class<?>, Set<Class<?>>> mFlattenHierarchyCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, Object> mStickyEvents = new ConcurrentHashMap<>();
+
+    @NonNull
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Class<?>, Object>> mStickyEventsByType =
+            new ConcurrentHashMap<>();
+
+    @NonNull
+    private final ConcurrentMap<Class<?>, Class<?>[]> mHostTypeCache = new ConcurrentHashMap<>();
+
+    @NonNull
+    private final ConcurrentMap<Class<?>, Class<?>[]> mEventTypeCache = new ConcurrentHashMap<>();
 
     @NonNull
     private final ConcurrentMap<Class<?>, ProducerFactory> mProducerFactoryCache = new ConcurrentHashMap<>();
@@ -49,25 +69,64 @@ public class Bus {
     private final ConcurrentMap<Class<?>, SubscriberFactory> mSubscriberFactoryCache = new ConcurrentHashMap<>();
 
     @NonNull
-    private final String mTag;
+    private final Set<Class<?>> mMissingProducerFactories =
+            Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
+
+    @NonNull
+    private final Set<Class<?>> mMissingSubscriberFactories =
+            Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
+
+    @NonNull
+    private final Set<Class<?>> mCoalescedTypes =
+            Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
+
+    @NonNull
+    private final ConcurrentMap<HostKey, HostRegistration> mHosts = new ConcurrentHashMap<>();
+
+    @NonNull
+    private final ReferenceQueue<Object> mCollectedHosts = new ReferenceQueue<>();
+
+    @NonNull
+    private final List<TootIndex> mIndexes = new CopyOnWriteArrayList<>();
 
     @NonNull
+    private final String mTag;
+
+    // Decided once at construction: a confined thread is checked by identity, ANY leaves both null
+    @Nullable
+    private final Thread mConfinedThread;
+
+    @Nullable
     private final ThreadEnforcer mEnforcer;
 
     @NonNull
-    private final ThreadLocal<ConcurrentLinkedQueue<DispatchInfo>> mDispatchQueue =
-            new ThreadLocal<ConcurrentLinkedQueue<DispatchInfo>>() {
-                @Override
-                protected ConcurrentLinkedQueue<DispatchInfo> initialValue() {
-                    return new ConcurrentLinkedQueue<>();
-                }
-            };
+    private final Executor mExecutor;
+
+    @Nullable
+    private final MainThreadSupport mMainThreadSupport;
+
+    @NonNull
+    private final ThreadMode mPostingThreadMode;
 
     @NonNull
-    private final ThreadLocal<Boolean> mDispatching = new ThreadLocal<Boolean>() {
+    private final ConcurrentMap<Subscriber, Mailbox> mMailboxes = new ConcurrentHashMap<>();
+
+    @Nullable
+    private volatile BusMetrics mMetrics;
+
+    private volatile int mMailboxCapacity = Integer.MAX_VALUE;
+
+    @NonNull
+    private volatile OverflowPolicy mOverflowPolicy = OverflowPolicy.BLOCK;
+
+    @NonNull
+    private final StripedCounter mDroppedEvents = new StripedCounter();
+
+    @NonNull
+    private final ThreadLocal<DispatchQueue> mDispatchQueue = new ThreadLocal<DispatchQueue>() {
         @Override
-        protected Boolean initialValue() {
-            return false;
+        protected DispatchQueue initialValue() {
+            return new DispatchQueue();
         }
     };
 
@@ -88,22 +147,161 @@ public class Bus {
     }
 
     public Bus(@NonNull ThreadEnforcer enforcer, @NonNull String tag) {
-        mEnforcer = enforcer;
+        this(enforcer, tag, BusExecutors.worker(), null);
+    }
+
+    /**
+     * @param executor          runs {@link ThreadMode#BACKGROUND} and {@link ThreadMode#ASYNC} subscribers
+     * @param mainThreadSupport runs {@link ThreadMode#MAIN} subscribers, or {@code null} to run them on the posting
+     *                          thread
+     */
+    public Bus(@NonNull ThreadEnforcer enforcer,
+               @NonNull String tag,
+               @NonNull Executor executor,
+               @Nullable MainThreadSupport mainThreadSupport) {
+        this(enforcer, tag, executor, mainThreadSupport, ThreadMode.POSTING);
+    }
+
+    Bus(@NonNull ThreadEnforcer enforcer,
+        @NonNull String tag,
+        @NonNull Executor executor,
+        @Nullable MainThreadSupport mainThreadSupport,
+        @NonNull ThreadMode postingThreadMode) {
+        if (enforcer instanceof ConfinedThreadEnforcer) {
+            mConfinedThread = ((ConfinedThreadEnforcer) enforcer).getThread();
+            mEnforcer = null;
+        } else {
+            mConfinedThread = null;
+            mEnforcer = enforcer != ThreadEnforcer.ANY ? enforcer : null;
+        }
         mTag = tag;
+        mExecutor = executor;
+        mMainThreadSupport = mainThreadSupport;
+        mPostingThreadMode = postingThreadMode;
     }
 
 
+    /**
+     * Adds a processor generated index, which is consulted before falling back to reflective factory lookup.
+     * Indexes should be added before registering any of the classes they cover.
+     */
+    @SuppressWarnings("unused")
+    public void addIndex(@NonNull TootIndex index) {
+        mIndexes.add(index);
+        mMissingProducerFactories.clear();
+        mMissingSubscriberFactories.clear();
+    }
+
+    /**
+     * Sets the listener for posting and delivery metrics, or {@code null} to stop recording. Without one, the bus
+     * does no timing or counting.
+     */
+    @SuppressWarnings("unused")
+    public void setMetrics(@Nullable BusMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * Bounds the queue of events pending asynchronous delivery to each subscriber, which is unbounded by default.
+     * Applies to subscribers which have not yet been queued an event, so should be set before registering.
+     */
+    @SuppressWarnings("unused")
+    public void setMailboxCapacity(int capacity, @NonNull OverflowPolicy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive, was " + capacity);
+        }
+        mMailboxCapacity = capacity;
+        mOverflowPolicy = policy;
+    }
+
+    /**
+     * Marks events of exactly the given class as {@link Coalesce coalescing} for every subscriber, in addition to
+     * event types annotated at compile time, or removes a mark added here.
+     */
+    @SuppressWarnings("unused")
+    public void setCoalesced(@NonNull Class<?> eventClass, boolean coalesced) {
+        if (coalesced) {
+            mCoalescedTypes.add(eventClass);
+        } else {
+            mCoalescedTypes.remove(eventClass);
+        }
+    }
+
+    /**
+     * Events queued for asynchronous delivery which have not yet reached their subscriber.
+     */
+    @SuppressWarnings("unused")
+    public int getQueuedEventCount() {
+        int count = 0;
+        for (Mailbox mailbox : mMailboxes.values()) {
+            count += mailbox.size();
+        }
+        return count;
+    }
+
+    /**
+     * Events discarded by an {@link OverflowPolicy} since the bus was created.
+     */
+    @SuppressWarnings("unused")
+    public long getDroppedEventCount() {
+        return mDroppedEvents.sum();
+    }
+
     @SuppressWarnings("unused")
     public void register(@NonNull Object object) {
-        mEnforcer.enforce(this);
+        register(object, null, null);
+    }
+
+    /**
+     * Registers the object with a filter applied to every one of its subscribers, in addition to any declared by
+     * {@link Subscribe#filter()}. Events the filter rejects are never queued for the host.
+     */
+    @SuppressWarnings("unused")
+    public void register(@NonNull Object object, @Nullable EventFilter filter) {
+        register(object, null, filter);
+    }
+
+    /**
+     * Registers the object's subscribers under a key, so they only receive events {@link #post(Object, Object) posted}
+     * with an equal key. Posting with a key only visits the subscribers registered under it, however many hosts are
+     * registered for the same event type under other keys.
+     * <p>
+     * Keyed subscribers receive neither produced nor sticky events, which are never posted with a key. The object's
+     * producers are registered as usual.
+     */
+    @SuppressWarnings("unused")
+    public void register(@NonNull Object object, @NonNull Object key) {
+        register(object, key, null);
+    }
+
+    @SuppressWarnings("unused")
+    public void register(@NonNull Object object, @Nullable Object key, @Nullable EventFilter filter) {
+        enforceThread();
+
+        Class<?>[] registerTypes = flattenHostHierarchy(object.getClass());
+        if (registerTypes.length == 0) {
+            log("No Subscriber or Producer found for: %s.", object.getClass());
+            return;
+        }
+
+        expungeCollectedHosts();
+
+        HostRegistration registration = new HostRegistration();
+        HostRegistration existing = mHosts.putIfAbsent(new HostKey(object, getCollectedHosts()), registration);
+        if (existing != null) {
+            registration = existing;
+        }
 
-        Set<Class<?>> registerTypes = flattenHierarchy(object.getClass(), true);
         for (Class<?> type : registerTypes) {
-            register(object, type);
+            register(object, type, registration, key, filter);
         }
     }
 
-    private <T> void register(@NonNull Object object, @NonNull Class<T> objectClass) {
+    private <T> void register(@NonNull Object object,
+                              @NonNull Class<T> objectClass,
+                              @NonNull HostRegistration registration,
+                              @Nullable Object key,
+                              @Nullable EventFilter filter) {
         SubscriberFactory subscriberFactory = findSubscriberFactoryForClass(objectClass);
         ProducerFactory producerFactory = findProducerFactoryForClass(objectClass);
 
@@ -114,54 +312,67 @@ public class Bus {
 
         if (producerFactory != null) {
             List<Class<?>> producerClasses = producerFactory.getProducedClasses();
-            for (Class<?> type : producerClasses) {
-
-                final Producer producer = producerFactory.getProducer(object);
+            for (int i = 0; i < producerClasses.size(); i++) {
+                Class<?> type = producerClasses.get(i);
+                if (!acceptsEventType(type)) {
+                    continue;
+                }
+                final Producer producer = producerFactory.getProducer(object, i);
                 Producer previousProducer = mProducers.putIfAbsent(type, producer);
+                while (previousProducer != null && !previousProducer.isValid()) {
+                    // The previous host was collected or is mid-unregister, so take over its slot
+                    previousProducer = mProducers.replace(type, previousProducer, producer)
+                            ? null : mProducers.putIfAbsent(type, producer);
+                }
                 //checking if the previous producer existed
                 if (previousProducer != null) {
                     throw new IllegalArgumentException("Producer method for type " + type
                             + " found on type " + producer.toString()
                             + ", but already registered by type " + previousProducer.toString() + ".");
                 }
-                Set<Subscriber> subscribers = mSubscribers.get(type);
-                if (subscribers != null && !subscribers.isEmpty()) {
-                    for (Subscriber subscriber : subscribers) {
-                        dispatchProducedEvent(subscriber, producer, type);
+                registration.addProducer(type, producer);
+                SubscriberArray subscribers = mSubscribers.get(type);
+                if (subscribers != null) {
+                    SubscriberArray.Snapshot snapshot = subscribers.snapshot();
+                    for (int j = 0; j < snapshot.size; j++) {
+                        if (snapshot.subscribers[j].isValid()) {
+                            dispatchProducedEvent(snapshot.subscribers[j], producer, type);
+                        }
                     }
                 }
             }
         }
 
         if (subscriberFactory != null) {
-            Subscriber subscriber = null;
             List<Class<?>> subscriberClasses = subscriberFactory.getSubscribedClasses();
-            for (Class<?> type : subscriberClasses) {
-                Set<Subscriber> subscribers = mSubscribers.get(type);
-                if (subscribers == null) {
-                    //concurrent put if absent
-                    Set<Subscriber> subscriberSet = new CopyOnWriteArraySet<>();
-                    subscribers = mSubscribers.putIfAbsent(type, subscriberSet);
-                    if (subscribers == null) {
-                        subscribers = subscriberSet;
-                    }
+            Subscriber[] registered = new Subscriber[subscriberClasses.size()];
+            for (int i = 0; i < registered.length; i++) {
+                Class<?> type = subscriberClasses.get(i);
+                if (!acceptsEventType(type)) {
+                    continue;
                 }
-
-                subscriber = subscriberFactory.getSubscriber(object);
-                if (!subscribers.add(subscriber)) {
-                    log("Failed to add subscriber: %s, event: %s.", subscriber, type);
-                    return;
+                registered[i] = subscriberFactory.getSubscriber(object, i);
+                registered[i].setHostFilter(filter);
+                SubscriberArray subscribers;
+                if (key != null) {
+                    subscribers = addKeyedSubscriber(type, key, registered[i]);
                 } else {
-                    log("Registered subscriber: %s, event: %s.", subscriber, type);
+                    subscribers = subscribersFor(type);
+                    subscribers.add(registered[i]);
                 }
+                registration.addSubscriber(registered[i], subscribers, key);
+                log("Registered subscriber: %s, event: %s.", registered[i], type);
             }
 
-            for (Class<?> type : subscriberClasses) {
+            // Keyed subscribers only receive keyed posts, which neither producers nor sticky events are
+            for (int i = 0; key == null && i < registered.length; i++) {
+                Class<?> type = subscriberClasses.get(i);
+                Subscriber subscriber = registered[i];
+                if (subscriber == null) {
+                    continue;
+                }
                 Producer producer = mProducers.get(type);
-                if (producer != null && producer.isValid() && subscriber != null) {
-                    if (!producer.isValid()) {
-                        break;
-                    }
+                if (producer != null && producer.isValid()) {
                     if (subscriber.isValid()) {
                         log("Dispatching To subscriber: %s, event: %s.", subscriber, type);
                         dispatchProducedEvent(subscriber, producer, type);
@@ -169,162 +380,765 @@ public class Bus {
                         log("Not dispatching to invalid subscriber: %s.", subscriber);
                     }
                 }
-            }
 
+                replayStickyEvents(subscriber, type);
+            }
         }
     }
 
-    @SuppressWarnings("unused")
-    public void unregister(@NonNull Object object) {
-        mEnforcer.enforce(this);
+    /**
+     * Delivers every retained sticky event which a post would have dispatched as the given type.
+     */
+    private void replayStickyEvents(@NonNull Subscriber subscriber, @NonNull Class<?> type) {
+        Map<Class<?>, Object> stickyEvents = getStickyEvents(type);
+        if (stickyEvents == null || stickyEvents.isEmpty()) {
+            return;
+        }
 
-        Set<Class<?>> unregisterTypes = flattenHierarchy(object.getClass(), true);
-        for (Class<?> type : unregisterTypes) {
-            unregister(object, type);
+        for (Object stickyEvent : stickyEvents.values()) {
+            if (subscriber.isValid() && subscriber.accepts(stickyEvent)) {
+                log("Dispatching sticky event to subscriber: %s, event: %s.", subscriber, type);
+                deliver(stickyEvent, subscriber);
+            }
         }
     }
 
-    private void unregister(@NonNull Object object, @NonNull Class<?> objectClass) {
-        SubscriberFactory subscriberFactory = findSubscriberFactoryForClass(objectClass);
-        ProducerFactory producerFactory = findProducerFactoryForClass(objectClass);
+    @NonNull
+    private SubscriberArray subscribersFor(@NonNull Class<?> type) {
+        SubscriberArray subscribers = mSubscribers.get(type);
+        if (subscribers == null) {
+            //concurrent put if absent
+            SubscriberArray subscriberArray = new SubscriberArray();
+            subscribers = mSubscribers.putIfAbsent(type, subscriberArray);
+            if (subscribers == null) {
+                subscribers = subscriberArray;
+            }
+        }
+        return subscribers;
+    }
 
-        if (subscriberFactory == null && producerFactory == null) {
-            log("No subscriber or producer found for: %s.", objectClass);
-            return;
+    @NonNull
+    private SubscriberArray addKeyedSubscriber(@NonNull Class<?> type,
+                                               @NonNull Object key,
+                                               @NonNull Subscriber subscriber) {
+        ConcurrentMap<Object, SubscriberArray> keyed = mKeyedSubscribers.get(type);
+        if (keyed == null) {
+            ConcurrentMap<Object, SubscriberArray> keyedCreation = new ConcurrentHashMap<>();
+            keyed = mKeyedSubscribers.putIfAbsent(type, keyedCreation);
+            if (keyed == null) {
+                keyed = keyedCreation;
+            }
         }
 
-        if (producerFactory != null) {
-            List<Class<?>> producerClasses = producerFactory.getProducedClasses();
-            for (Class<?> cls : producerClasses) {
-                Producer producer = mProducers.get(cls);
+        // Posting reads the index without locking, only adding and pruning arrays for a type are serialised
+        synchronized (keyed) {
+            SubscriberArray subscribers = keyed.get(key);
+            if (subscribers == null) {
+                subscribers = new SubscriberArray();
+                keyed.put(key, subscribers);
+            }
+            subscribers.add(subscriber);
+            return subscribers;
+        }
+    }
+
+    private void removeKeyedSubscriber(@NonNull Subscriber subscriber,
+                                       @NonNull Object key,
+                                       @NonNull SubscriberArray subscribers) {
+        subscribers.onInvalidated();
 
-                if (producer == null) {
-                    log("Missing event producer for an annotated method. Is %s registered?", objectClass);
-                    return;
+        ConcurrentMap<Object, SubscriberArray> keyed = mKeyedSubscribers.get(subscriber.getEventClass());
+        if (keyed != null) {
+            synchronized (keyed) {
+                if (subscribers.isEmpty()) {
+                    keyed.remove(key, subscribers);
                 }
+            }
+        }
+    }
 
-                producer.invalidate();
-                mProducers.remove(cls);
+    /**
+     * Resolves factories and class hierarchies for the given host and event classes ahead of time, so the first
+     * registration or post of each doesn't pay for discovery on the calling thread.
+     */
+    @SuppressWarnings("unused")
+    public void preload(@NonNull Class<?>... classes) {
+        for (Class<?> cls : classes) {
+            for (Class<?> eventType : getHandledEventTypes(cls)) {
+                preloadEventType(eventType);
             }
+            preloadEventType(cls);
         }
+    }
 
-        if (subscriberFactory != null) {
-            List<Class<?>> subscriberClasses = subscriberFactory.getSubscribedClasses();
-            for (Class<?> type : subscriberClasses) {
-                boolean removed = false;
-                Set<Subscriber> currentSubscribers = mSubscribers.get(type);
-                for (Subscriber subscriber : currentSubscribers) {
-                    if (subscriber.host.get() == object) {
-                        subscriber.invalidate();
-                        currentSubscribers.remove(subscriber);
-                        log("Unregistered Subscriber: %s, Event: %s.", subscriber, type);
-                        removed = true;
+    /**
+     * Every event type subscribed to or produced by the host class and its superclasses.
+     */
+    @NonNull
+    Set<Class<?>> getHandledEventTypes(@NonNull Class<?> hostClass) {
+        Set<Class<?>> eventTypes = new LinkedHashSet<>();
+        for (Class<?> hostType : flattenHostHierarchy(hostClass)) {
+            SubscriberFactory subscriberFactory = findSubscriberFactoryForClass(hostType);
+            if (subscriberFactory != null) {
+                eventTypes.addAll(subscriberFactory.getSubscribedClasses());
+            }
+            ProducerFactory producerFactory = findProducerFactoryForClass(hostType);
+            if (producerFactory != null) {
+                eventTypes.addAll(producerFactory.getProducedClasses());
+            }
+        }
+        return eventTypes;
+    }
+
+    /**
+     * {@link #preload(Class[]) Preloads} every host and event class listed by the added indexes.
+     */
+    @SuppressWarnings("unused")
+    public void warmUp() {
+        preload(getIndexedClasses());
+    }
+
+    /**
+     * {@link #warmUp() Warms up} in parallel, splitting the indexed classes into one batch per core on the given
+     * executor. Blocks until every batch has finished.
+     */
+    @SuppressWarnings("unused")
+    public void warmUp(@NonNull Executor executor) throws InterruptedException {
+        final Class<?>[] classes = getIndexedClasses();
+        int batches = Math.max(1, Math.min(classes.length, Runtime.getRuntime().availableProcessors()));
+        final CountDownLatch latch = new CountDownLatch(batches);
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        for (int i = 0; i < batches; i++) {
+            final int from = classes.length * i / batches;
+            final int to = classes.length * (i + 1) / batches;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        preload(Arrays.copyOfRange(classes, from, to));
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        latch.countDown();
                     }
                 }
+            });
+        }
 
-                if (!removed) {
-                    log( "Missing event subscriber for an annotated method. Is %s registered?", objectClass);
-                }
+        latch.await();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    @NonNull
+    private Class<?>[] getIndexedClasses() {
+        Set<Class<?>> classes = new LinkedHashSet<>();
+        for (TootIndex index : mIndexes) {
+            classes.addAll(index.getIndexedClasses());
+            classes.addAll(index.getEventClasses());
+        }
+        classes.add(DeadEvent.class);
+        return classes.toArray(new Class<?>[classes.size()]);
+    }
+
+    void preloadEventType(@NonNull Class<?> eventType) {
+        flattenEventHierarchy(eventType);
+        if (acceptsEventType(eventType)) {
+            subscribersFor(eventType);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public void unregister(@NonNull Object object) {
+        enforceThread();
+
+        HostRegistration registration = mHosts.remove(new HostKey(object));
+        if (registration == null) {
+            log("No registration found for %s. Is it registered?", object);
+            return;
+        }
+
+        release(registration);
+    }
+
+    /**
+     * Removes registrations whose hosts were garbage collected without being unregistered. Called on register and
+     * post, and costs a single read when nothing has been collected.
+     */
+    void expungeCollectedHosts() {
+        Reference<?> key;
+        while ((key = getCollectedHosts().poll()) != null) {
+            releaseCollectedHost(key);
+        }
+    }
+
+    /**
+     * Releases the registration held under the key of a collected host, if this bus holds one.
+     *
+     * @return whether a registration was released
+     */
+    boolean releaseCollectedHost(@NonNull Reference<?> key) {
+        HostRegistration registration = mHosts.remove(key);
+        if (registration == null) {
+            return false;
+        }
+        log("Releasing registration of collected host.");
+        release(registration);
+        return true;
+    }
+
+    /**
+     * The queue the keys of collected hosts are enqueued on.
+     */
+    @NonNull
+    ReferenceQueue<Object> getCollectedHosts() {
+        return mCollectedHosts;
+    }
+
+    private void release(@NonNull HostRegistration registration) {
+        Class<?>[] producedClasses = registration.getProducedClasses();
+        Producer[] producers = registration.getProducers();
+        for (int i = 0; i < producers.length; i++) {
+            producers[i].invalidate();
+            mProducers.remove(producedClasses[i], producers[i]);
+        }
+
+        Subscriber[] subscribers = registration.getSubscribers();
+        SubscriberArray[] arrays = registration.getSubscriberArrays();
+        Object[] keys = registration.getSubscriberKeys();
+        for (int i = 0; i < subscribers.length; i++) {
+            Subscriber subscriber = subscribers[i];
+            subscriber.invalidate();
+            if (keys[i] != null) {
+                removeKeyedSubscriber(subscriber, keys[i], arrays[i]);
+            } else {
+                arrays[i].onInvalidated();
             }
+            mMailboxes.remove(subscriber);
+            log("Unregistered Subscriber: %s, Event: %s.", subscriber, subscriber.getEventClass());
         }
     }
 
     @SuppressWarnings("unused")
     public <E> void post(@NonNull E event) {
-        mEnforcer.enforce(this);
+        enforceThread();
+        dispatchPosted(event, null);
+    }
+
+    /**
+     * Posts an event to subscribers registered under an equal key, as well as to those registered without one.
+     */
+    @SuppressWarnings("unused")
+    public <E> void post(@NonNull E event, @NonNull Object key) {
+        enforceThread();
+        dispatchPosted(event, key);
+    }
+
+    /**
+     * Posts a request and returns its pending reply without waiting for it. The reply fails with a
+     * {@link TimeoutException} if no subscriber has answered within the timeout, or straight away if the request had
+     * no subscribers to post to.
+     */
+    @NonNull
+    @SuppressWarnings("unused")
+    public <R> ReplyFuture<R> request(@NonNull Request<R> request, long timeout, @NonNull TimeUnit unit) {
+        markSent(request);
+
+        ReplyFuture<R> reply = request.getReply();
+        String message = "No reply to " + request + " within " + timeout + " " + unit + ".";
+        reply.setTimeout(BusExecutors.scheduler().schedule(new RequestTimeout(reply, message), timeout, unit));
+        return send(request);
+    }
+
+    /**
+     * Posts a request as {@link #request(Request, long, TimeUnit)} does, without a timeout.
+     */
+    @NonNull
+    @SuppressWarnings("unused")
+    public <R> ReplyFuture<R> request(@NonNull Request<R> request) {
+        markSent(request);
+        return send(request);
+    }
+
+    private static void markSent(@NonNull Request<?> request) {
+        if (!request.markSent()) {
+            throw new IllegalStateException(request + " has already been sent.");
+        }
+    }
+
+    @NonNull
+    private <R> ReplyFuture<R> send(@NonNull Request<R> request) {
+        try {
+            post(request);
+        } catch (RuntimeException e) {
+            request.fail(e);
+            throw e;
+        }
+        return request.getReply();
+    }
 
-        Set<Class<?>> dispatchTypes = flattenHierarchy(event.getClass(), false);
+    /**
+     * Posts an event on the calling thread, without thread enforcement.
+     */
+    void dispatchPosted(@NonNull Object event, @Nullable Object key) {
+        expungeCollectedHosts();
 
-        boolean dispatched = false;
+        DispatchQueue queue = mDispatchQueue.get();
+        enqueuePost(event, flattenEventHierarchy(event.getClass()), key, queue);
+        dispatchQueuedEvents(queue);
+    }
+
+    /**
+     * Posts each event in iteration order, resolving the types and unkeyed subscribers it is dispatched to once per
+     * run of events of the same class, and draining them in a single dispatch loop. Every subscriber still sees the
+     * events in order, but events posted by subscribers are queued behind the whole batch rather than behind the event
+     * that triggered them.
+     */
+    @SuppressWarnings("unused")
+    public void postAll(@NonNull Iterable<?> events) {
+        enforceThread();
+        expungeCollectedHosts();
+
+        DispatchQueue queue = mDispatchQueue.get();
+        Class<?> lastClass = null;
+        Class<?>[] dispatchTypes = null;
+        SubscriberArray.Snapshot[] snapshots = null;
+        boolean coalesced = false;
+        for (Object event : events) {
+            Class<?> eventClass = event.getClass();
+            if (eventClass != lastClass) {
+                dispatchTypes = flattenEventHierarchy(eventClass);
+                snapshots = snapshotSubscribers(dispatchTypes);
+                coalesced = isCoalesced(eventClass);
+                lastClass = eventClass;
+            }
+            int dispatched = enqueueEvent(event, dispatchTypes, snapshots, null, coalesced, queue);
+            onPosted(event, dispatched, queue);
+        }
+        dispatchQueuedEvents(queue);
+    }
+
+    @SuppressWarnings("unused")
+    public void postAll(@NonNull Object... events) {
+        postAll(Arrays.asList(events));
+    }
+
+    /**
+     * Posts the first {@code count} events on the calling thread as {@link #postAll(Iterable)} does, without thread
+     * enforcement. Any {@link KeyedEvent} is posted with its key.
+     */
+    void dispatchAll(@NonNull Object[] events, int count) {
+        expungeCollectedHosts();
+
+        DispatchQueue queue = mDispatchQueue.get();
+        Class<?> lastClass = null;
+        Class<?>[] dispatchTypes = null;
+        SubscriberArray.Snapshot[] snapshots = null;
+        boolean coalesced = false;
+        for (int i = 0; i < count; i++) {
+            Object event = events[i];
+            Object key = null;
+            if (event instanceof KeyedEvent) {
+                key = ((KeyedEvent) event).key;
+                event = ((KeyedEvent) event).event;
+            }
+            Class<?> eventClass = event.getClass();
+            if (eventClass != lastClass) {
+                dispatchTypes = flattenEventHierarchy(eventClass);
+                snapshots = snapshotSubscribers(dispatchTypes);
+                coalesced = isCoalesced(eventClass);
+                lastClass = eventClass;
+            }
+            int dispatched = enqueueEvent(event, dispatchTypes, snapshots, key, coalesced, queue);
+            onPosted(event, dispatched, queue);
+        }
+        dispatchQueuedEvents(queue);
+    }
+
+    private void enqueuePost(@NonNull Object event,
+                             @NonNull Class<?>[] dispatchTypes,
+                             @Nullable Object key,
+                             @NonNull DispatchQueue queue) {
+        onPosted(event, enqueueEvent(event, dispatchTypes, key, queue), queue);
+    }
+
+    /**
+     * Reports a queued post to metrics, and queues a {@link DeadEvent} in its place if it had no subscribers.
+     */
+    private void onPosted(@NonNull Object event, int dispatched, @NonNull DispatchQueue queue) {
+        BusMetrics metrics = mMetrics;
+        if (metrics != null) {
+            metrics.onPost(event.getClass(), dispatched);
+        }
+
+        if (dispatched == 0 && !(event instanceof DeadEvent)) {
+            if (metrics != null) {
+                metrics.onDeadEvent(event.getClass());
+            }
+            failUnanswerable(event);
+            DeadEvent<Object> deadEvent = new DeadEvent<>(this, event);
+            enqueuePost(deadEvent, flattenEventHierarchy(DeadEvent.class), null, queue);
+        }
+    }
+
+    /**
+     * The subscribers registered for exactly the given event type without a key, if any.
+     */
+    @Nullable
+    SubscriberArray getSubscribers(@NonNull Class<?> type) {
+        return mSubscribers.get(type);
+    }
+
+    /**
+     * The subscribers registered for exactly the given event type under the given key, if any.
+     */
+    @Nullable
+    SubscriberArray getKeyedSubscribers(@NonNull Class<?> type, @NonNull Object key) {
+        ConcurrentMap<Object, SubscriberArray> keyed = mKeyedSubscribers.get(type);
+        return keyed != null ? keyed.get(key) : null;
+    }
+
+    private int enqueueEvent(@NonNull Object event,
+                             @NonNull Class<?>[] dispatchTypes,
+                             @Nullable Object key,
+                             @NonNull DispatchQueue queue) {
+        boolean coalesced = isCoalesced(event.getClass());
+        int dispatched = 0;
         for (Class<?> eventType : dispatchTypes) {
-            Set<Subscriber> subscribers = mSubscribers.get(eventType);
+            SubscriberArray subscribers = getSubscribers(eventType);
+            SubscriberArray keyedSubscribers = key != null ? getKeyedSubscribers(eventType, key) : null;
 
-            if (subscribers != null && !subscribers.isEmpty()) {
-                dispatched = true;
-                for (Subscriber subscriber : subscribers) {
-                    enqueueEvent(event, subscriber);
+            if (keyedSubscribers == null) {
+                if (subscribers != null) {
+                    dispatched += enqueueEvent(event, subscribers.snapshot(), coalesced, queue);
                 }
+            } else if (subscribers == null) {
+                dispatched += enqueueEvent(event, keyedSubscribers.snapshot(), coalesced, queue);
+            } else {
+                dispatched += enqueueEvent(event, subscribers.snapshot(), keyedSubscribers.snapshot(), coalesced, queue);
             }
         }
+        return dispatched;
+    }
 
-        if (!dispatched && !(event instanceof DeadEvent)) {
-            post(new DeadEvent<>(this, event));
+    /**
+     * Snapshots the unkeyed subscribers of each of the given types, so a batch of events of the same class can be
+     * queued without looking them up again. Types without subscribers have a {@code null} entry.
+     */
+    @NonNull
+    private SubscriberArray.Snapshot[] snapshotSubscribers(@NonNull Class<?>[] dispatchTypes) {
+        SubscriberArray.Snapshot[] snapshots = new SubscriberArray.Snapshot[dispatchTypes.length];
+        for (int i = 0; i < dispatchTypes.length; i++) {
+            SubscriberArray subscribers = getSubscribers(dispatchTypes[i]);
+            if (subscribers != null) {
+                snapshots[i] = subscribers.snapshot();
+            }
         }
+        return snapshots;
+    }
 
-        dispatchQueuedEvents();
+    /**
+     * Queues an event to the given snapshots of the unkeyed subscribers of its types, merged with any subscribers
+     * registered under its key.
+     */
+    private int enqueueEvent(@NonNull Object event,
+                             @NonNull Class<?>[] dispatchTypes,
+                             @NonNull SubscriberArray.Snapshot[] snapshots,
+                             @Nullable Object key,
+                             boolean coalesced,
+                             @NonNull DispatchQueue queue) {
+        int dispatched = 0;
+        for (int i = 0; i < dispatchTypes.length; i++) {
+            SubscriberArray.Snapshot snapshot = snapshots[i];
+            SubscriberArray keyedSubscribers = key != null ? getKeyedSubscribers(dispatchTypes[i], key) : null;
+
+            if (keyedSubscribers == null) {
+                if (snapshot != null) {
+                    dispatched += enqueueEvent(event, snapshot, coalesced, queue);
+                }
+            } else if (snapshot == null) {
+                dispatched += enqueueEvent(event, keyedSubscribers.snapshot(), coalesced, queue);
+            } else {
+                dispatched += enqueueEvent(event, snapshot, keyedSubscribers.snapshot(), coalesced, queue);
+            }
+        }
+        return dispatched;
+    }
+
+    private static int enqueueEvent(@NonNull Object event,
+                                    @NonNull SubscriberArray.Snapshot snapshot,
+                                    boolean coalesced,
+                                    @NonNull DispatchQueue queue) {
+        Subscriber[] subscribers = snapshot.subscribers;
+        int dispatched = 0;
+        for (int i = 0; i < snapshot.size; i++) {
+            if (enqueueEvent(event, subscribers[i], coalesced, queue)) {
+                dispatched++;
+            }
+        }
+        return dispatched;
+    }
+
+    /**
+     * Merges two priority sorted arrays, taking from the first on ties so unkeyed subscribers keep their place.
+     */
+    private static int enqueueEvent(@NonNull Object event,
+                                    @NonNull SubscriberArray.Snapshot firstSnapshot,
+                                    @NonNull SubscriberArray.Snapshot secondSnapshot,
+                                    boolean coalesced,
+                                    @NonNull DispatchQueue queue) {
+        Subscriber[] first = firstSnapshot.subscribers;
+        Subscriber[] second = secondSnapshot.subscribers;
+        int firstSize = firstSnapshot.size;
+        int secondSize = secondSnapshot.size;
+        int dispatched = 0;
+        int i = 0;
+        int j = 0;
+        while (i < firstSize || j < secondSize) {
+            Subscriber subscriber;
+            if (j == secondSize || (i < firstSize && first[i].getPriority() >= second[j].getPriority())) {
+                subscriber = first[i++];
+            } else {
+                subscriber = second[j++];
+            }
+            if (enqueueEvent(event, subscriber, coalesced, queue)) {
+                dispatched++;
+            }
+        }
+        return dispatched;
+    }
+
+    private static boolean enqueueEvent(@NonNull Object event,
+                                        @NonNull Subscriber subscriber,
+                                        boolean coalesced,
+                                        @NonNull DispatchQueue queue) {
+        if (!subscriber.isValid() || !subscriber.accepts(event)) {
+            return false;
+        }
+        if (coalesced || subscriber.isCoalescing()) {
+            queue.offerCoalescing(event, subscriber);
+        } else {
+            queue.offer(event, subscriber);
+        }
+        return true;
+    }
+
+    /**
+     * Fails the reply to a request which was posted to no subscribers, rather than leaving it to time out.
+     */
+    private static void failUnanswerable(@NonNull Object event) {
+        if (event instanceof Request) {
+            ((Request<?>) event).fail(new IllegalStateException("No subscribers for request " + event + "."));
+        }
+    }
+
+    /**
+     * Whether subscribers and producers of the given event type should be registered on this bus.
+     */
+    boolean acceptsEventType(@NonNull Class<?> type) {
+        return true;
+    }
+
+    /**
+     * Posts an event and retains it as the latest of its class. Subscribers registered later for any type a post
+     * would dispatch it as, its class, superclasses or interfaces, receive it straight away without calling back into
+     * any host. A subscriber matching retained events of several classes receives each of them, in no particular
+     * order.
+     */
+    @SuppressWarnings("unused")
+    public <E> void postSticky(@NonNull E event) {
+        enforceThread();
+
+        Class<?> eventClass = event.getClass();
+        Class<?>[] dispatchTypes = flattenEventHierarchy(eventClass);
+        synchronized (mStickyEvents) {
+            mStickyEvents.put(eventClass, event);
+            for (Class<?> type : dispatchTypes) {
+                ConcurrentMap<Class<?>, Object> stickyEvents = mStickyEventsByType.get(type);
+                if (stickyEvents == null) {
+                    stickyEvents = new ConcurrentHashMap<>();
+                    mStickyEventsByType.put(type, stickyEvents);
+                }
+                stickyEvents.put(eventClass, event);
+            }
+        }
+        post(event);
+    }
+
+    /**
+     * The retained sticky events a post would have dispatched as the given type, by class, which registration replays
+     * from.
+     */
+    @Nullable
+    Map<Class<?>, Object> getStickyEvents(@NonNull Class<?> type) {
+        return mStickyEventsByType.get(type);
+    }
+
+    private void unindexStickyEvent(@NonNull Object event) {
+        Class<?> eventClass = event.getClass();
+        for (Class<?> type : flattenEventHierarchy(eventClass)) {
+            ConcurrentMap<Class<?>, Object> stickyEvents = mStickyEventsByType.get(type);
+            if (stickyEvents != null) {
+                stickyEvents.remove(eventClass, event);
+            }
+        }
+    }
+
+    @Nullable
+    @SuppressWarnings("unused")
+    public <E> E getSticky(@NonNull Class<E> eventClass) {
+        return eventClass.cast(mStickyEvents.get(eventClass));
     }
 
     @Nullable
-    private SubscriberFactory findSubscriberFactoryForClass(Class<?> cls) {
+    @SuppressWarnings("unused")
+    public <E> E removeSticky(@NonNull Class<E> eventClass) {
+        synchronized (mStickyEvents) {
+            Object event = mStickyEvents.remove(eventClass);
+            if (event != null) {
+                unindexStickyEvent(event);
+            }
+            return eventClass.cast(event);
+        }
+    }
+
+    /**
+     * Removes a sticky event only if it is still the latest of its class.
+     */
+    @SuppressWarnings("unused")
+    public boolean removeSticky(@NonNull Object event) {
+        synchronized (mStickyEvents) {
+            if (!mStickyEvents.remove(event.getClass(), event)) {
+                return false;
+            }
+            unindexStickyEvent(event);
+            return true;
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public void removeAllSticky() {
+        synchronized (mStickyEvents) {
+            mStickyEvents.clear();
+            mStickyEventsByType.clear();
+        }
+    }
+
+    @Nullable
+    SubscriberFactory findSubscriberFactoryForClass(@NonNull Class<?> cls) {
         SubscriberFactory factory = mSubscriberFactoryCache.get(cls);
         if (factory != null) {
             log("Subscriber cached in factory map for %s.", cls);
             return factory;
         }
+        if (mMissingSubscriberFactories.contains(cls)) {
+            return null;
+        }
 
-        try {
-            Class<?> factoryClass = Class.forName(cls.getName() + SubscriberFactory.CLASS_SUFFIX);
-            //noinspection unchecked
-            factory = (SubscriberFactory) factoryClass.newInstance();
-            log("Subscriber loaded factory class for %s.", cls);
-        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
-            log("Subscriber not found for %s.", cls, cls.getSuperclass());
-            factory = null;
+        TootIndex index = findIndexForClass(cls);
+        if (index != null) {
+            factory = index.getSubscriberFactory(cls);
+            log("Subscriber %s in index for %s.", factory != null ? "found" : "not found", cls);
+        } else {
+            try {
+                Class<?> factoryClass = Class.forName(cls.getName() + SubscriberFactory.CLASS_SUFFIX);
+                //noinspection unchecked
+                factory = (SubscriberFactory) factoryClass.newInstance();
+                log("Subscriber loaded factory class for %s.", cls);
+            } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+                log("Subscriber not found for %s.", cls, cls.getSuperclass());
+                factory = null;
+            }
         }
 
         if (factory != null) {
             mSubscriberFactoryCache.put(cls, factory);
+        } else {
+            mMissingSubscriberFactories.add(cls);
         }
         return factory;
     }
 
     @Nullable
-    private ProducerFactory findProducerFactoryForClass(Class<?> cls) {
+    ProducerFactory findProducerFactoryForClass(@NonNull Class<?> cls) {
         ProducerFactory factory = mProducerFactoryCache.get(cls);
         if (factory != null) {
             log("Producer cached in factory map for %s.", cls);
             return factory;
         }
+        if (mMissingProducerFactories.contains(cls)) {
+            return null;
+        }
 
-        try {
-            Class<?> factoryClass = Class.forName(cls.getName() + ProducerFactory.CLASS_SUFFIX);
-            //noinspection unchecked
-            factory = (ProducerFactory) factoryClass.newInstance();
-            log("Producer loaded factory class for %s.", cls);
-        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
-            log("Producer not found for %s.", cls);
-            factory = null;
+        TootIndex index = findIndexForClass(cls);
+        if (index != null) {
+            factory = index.getProducerFactory(cls);
+            log("Producer %s in index for %s.", factory != null ? "found" : "not found", cls);
+        } else {
+            try {
+                Class<?> factoryClass = Class.forName(cls.getName() + ProducerFactory.CLASS_SUFFIX);
+                //noinspection unchecked
+                factory = (ProducerFactory) factoryClass.newInstance();
+                log("Producer loaded factory class for %s.", cls);
+            } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+                log("Producer not found for %s.", cls);
+                factory = null;
+            }
         }
 
         if (factory != null) {
             mProducerFactoryCache.put(cls, factory);
+        } else {
+            mMissingProducerFactories.add(cls);
         }
         return factory;
     }
 
-    private <E> void enqueueEvent(@NonNull E event, @NonNull Subscriber subscriber) {
-        mDispatchQueue.get().offer(new DispatchInfo<>(event, subscriber));
+    @Nullable
+    private TootIndex findIndexForClass(@NonNull Class<?> cls) {
+        for (TootIndex index : mIndexes) {
+            if (index.isIndexed(cls)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    void enforceThread() {
+        Thread confinedThread = mConfinedThread;
+        if (confinedThread != null) {
+            if (Thread.currentThread() != confinedThread) {
+                throw ConfinedThreadEnforcer.newViolation(this, confinedThread);
+            }
+        } else if (mEnforcer != null) {
+            mEnforcer.enforce(this);
+        }
+    }
+
+    private boolean isCoalesced(@NonNull Class<?> eventClass) {
+        return !mCoalescedTypes.isEmpty() && mCoalescedTypes.contains(eventClass);
     }
 
-    private void dispatchQueuedEvents() {
-        if (mDispatching.get()) {
+    private void dispatchQueuedEvents(@NonNull DispatchQueue queue) {
+        if (queue.dispatching) {
             return;
         }
 
-        mDispatching.set(true);
+        queue.dispatching = true;
         try {
-            while (true) {
-                DispatchInfo dispatchInfo = mDispatchQueue.get().poll();
-                if (dispatchInfo == null) {
-                    break;
-                }
+            while (!queue.isEmpty()) {
+                Object event = queue.peekEvent();
+                Subscriber subscriber = queue.peekSubscriber();
+                queue.remove();
 
-                if (dispatchInfo.subscriber.isValid()) {
-                    dispatch(dispatchInfo.event, dispatchInfo.subscriber);
+                if (subscriber.isValid()) {
+                    deliver(event, subscriber);
                 }
             }
         } finally {
-            mDispatching.set(false);
+            queue.dispatching = false;
         }
     }
 
@@ -334,7 +1148,9 @@ public class Bus {
         if (producer.isValid()) {
             E event = producer.dispatchProduceEvent(eventClass);
             if (event != null) {
-                dispatch(event, subscriber);
+                if (subscriber.accepts(event)) {
+                    deliver(event, subscriber);
+                }
             } else {
                 throw new IllegalStateException(producer.toString() + " returned null for event type " + eventClass);
             }
@@ -343,20 +1159,97 @@ public class Bus {
         }
     }
 
+    void deliver(@NonNull Object event, @NonNull Subscriber subscriber) {
+        ThreadMode threadMode = subscriber.getThreadMode();
+        if (threadMode == ThreadMode.POSTING) {
+            threadMode = mPostingThreadMode;
+        }
+
+        switch (threadMode) {
+            case MAIN:
+                if (mMainThreadSupport == null || mMainThreadSupport.isMainThread()) {
+                    dispatch(event, subscriber);
+                } else {
+                    queue(event, subscriber, findMailbox(subscriber, mMainThreadSupport.getExecutor()));
+                }
+                break;
+            case BACKGROUND:
+                queue(event, subscriber, findMailbox(subscriber, mExecutor));
+                break;
+            case ASYNC:
+                mExecutor.execute(new AsyncDelivery(this, event, subscriber));
+                break;
+            default:
+                dispatch(event, subscriber);
+                break;
+        }
+    }
+
+    @NonNull
+    private Mailbox findMailbox(@NonNull Subscriber subscriber, @NonNull Executor executor) {
+        Mailbox mailbox = mMailboxes.get(subscriber);
+        if (mailbox == null) {
+            Mailbox created = new Mailbox(this, subscriber, executor, mMailboxCapacity, mOverflowPolicy);
+            mailbox = mMailboxes.putIfAbsent(subscriber, created);
+            if (mailbox == null) {
+                mailbox = created;
+                // Lost a race with unregister, don't leave the mailbox behind
+                if (!subscriber.isValid()) {
+                    mMailboxes.remove(subscriber, created);
+                }
+            }
+        }
+        return mailbox;
+    }
+
+    private void queue(@NonNull Object event, @NonNull Subscriber subscriber, @NonNull Mailbox mailbox) {
+        int depth = mailbox.offer(event, subscriber.isCoalescing() || isCoalesced(event.getClass()));
+        BusMetrics metrics = mMetrics;
+        if (metrics != null) {
+            metrics.onQueued(event.getClass(), depth);
+        }
+    }
+
     private <E> void dispatch(@NonNull E event, @NonNull Subscriber subscriber) {
         if (subscriber.isValid()) {
-            subscriber.dispatchEvent(event);
+            invoke(event, subscriber);
         } else {
             throw new IllegalStateException(subscriber.toString() + " has been invalidated and can no longer receive events.");
         }
     }
 
+    void onOverflow(@NonNull Object droppedEvent) {
+        mDroppedEvents.increment();
+        BusMetrics metrics = mMetrics;
+        if (metrics != null) {
+            metrics.onDropped(droppedEvent.getClass());
+        }
+    }
+
+    void invoke(@NonNull Object event, @NonNull Subscriber subscriber) {
+        BusMetrics metrics = mMetrics;
+        if (metrics == null) {
+            subscriber.dispatchEvent(event);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            subscriber.dispatchEvent(event);
+        } finally {
+            metrics.onDelivered(event.getClass(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * The class and those of its superclasses which have a generated subscriber or producer factory.
+     */
     @NonNull
-    private Set<Class<?>> flattenHierarchy(@NonNull Class<?> concreteClass, boolean requireFactory) {
-        Set<Class<?>> classes = mFlattenHierarchyCache.get(concreteClass);
+    Class<?>[] flattenHostHierarchy(@NonNull Class<?> concreteClass) {
+        Class<?>[] classes = mHostTypeCache.get(concreteClass);
         if (classes == null) {
-            Set<Class<?>> classesCreation = getClassesFor(concreteClass, requireFactory);
-            classes = mFlattenHierarchyCache.putIfAbsent(concreteClass, classesCreation);
+            Class<?>[] classesCreation = getHostClassesFor(concreteClass);
+            classes = mHostTypeCache.putIfAbsent(concreteClass, classesCreation);
             if (classes == null) {
                 classes = classesCreation;
             }
@@ -366,36 +1259,62 @@ public class Bus {
     }
 
     @NonNull
-    private Set<Class<?>> getClassesFor(@NonNull Class<?> concreteClass, boolean requireFactory) {
-        List<Class<?>> parents = new LinkedList<>();
-        Set<Class<?>> classes = new HashSet<>();
-
-        parents.add(concreteClass);
+    private Class<?>[] getHostClassesFor(@NonNull Class<?> concreteClass) {
+        List<Class<?>> classes = new ArrayList<>();
 
-        while (!parents.isEmpty()) {
-            Class<?> clazz = parents.remove(0);
-
-            boolean validClass = true;
-            if (requireFactory) {
-                SubscriberFactory subscriberFactory = findSubscriberFactoryForClass(clazz);
-                ProducerFactory producerFactory = findProducerFactoryForClass(clazz);
-                validClass = (subscriberFactory != null || producerFactory != null);
+        Class<?> clazz = concreteClass;
+        while (clazz != null) {
+            if (findSubscriberFactoryForClass(clazz) != null || findProducerFactoryForClass(clazz) != null) {
+                classes.add(clazz);
             }
 
-            if (validClass) {
-                classes.add(clazz);
+            clazz = clazz.getSuperclass();
+            if (clazz != null && !isInterestingClass(clazz)) {
+                break;
             }
+        }
+
+        return classes.toArray(new Class<?>[classes.size()]);
+    }
 
-            Class<?> parent = clazz.getSuperclass();
-            if (parent != null) {
-                String name = parent.getName();
-                if (!name.startsWith("java.") && !name.startsWith("android.")) {
-                    parents.add(parent);
+    /**
+     * Every type an event of the given class is dispatched as: the class itself, its superclasses and all interfaces
+     * it implements, nearest first.
+     */
+    @NonNull
+    Class<?>[] flattenEventHierarchy(@NonNull Class<?> concreteClass) {
+        Class<?>[] types = mEventTypeCache.get(concreteClass);
+        if (types == null) {
+            Set<Class<?>> typeSet = new LinkedHashSet<>();
+            List<Class<?>> parents = new LinkedList<>();
+            parents.add(concreteClass);
+
+            while (!parents.isEmpty()) {
+                Class<?> clazz = parents.remove(0);
+                if (clazz == concreteClass || isInterestingClass(clazz)) {
+                    if (typeSet.add(clazz)) {
+                        Class<?> parent = clazz.getSuperclass();
+                        if (parent != null) {
+                            parents.add(parent);
+                        }
+                        Collections.addAll(parents, clazz.getInterfaces());
+                    }
                 }
             }
+
+            Class<?>[] typesCreation = typeSet.toArray(new Class<?>[typeSet.size()]);
+            types = mEventTypeCache.putIfAbsent(concreteClass, typesCreation);
+            if (types == null) {
+                types = typesCreation;
+            }
         }
 
-        return classes;
+        return types;
+    }
+
+    private static boolean isInterestingClass(@NonNull Class<?> cls) {
+        String name = cls.getName();
+        return !name.startsWith("java.") && !name.startsWith("android.");
     }
 
     private static void log(@NonNull String message, @Nullable Object... args) {
@@ -412,18 +1331,67 @@ public class Bus {
         return "[Bus \"" + mTag + "\"]";
     }
 
-    static class DispatchInfo<E> {
+    /**
+     * An event and the key it was posted with, for buses which hand posts to another thread before dispatching them.
+     */
+    static final class KeyedEvent {
 
         @NonNull
-        final E event;
+        final Object event;
 
         @NonNull
-        final Subscriber subscriber;
+        final Object key;
 
 
-        DispatchInfo(@NonNull E event, @NonNull Subscriber subscriber) {
+        KeyedEvent(@NonNull Object event, @NonNull Object key) {
             this.event = event;
-            this.subscriber = subscriber;
+            this.key = key;
+        }
+    }
+
+    private static final class RequestTimeout implements Runnable {
+
+        @NonNull
+        private final ReplyFuture<?> mReply;
+
+        @NonNull
+        private final String mMessage;
+
+
+        RequestTimeout(@NonNull ReplyFuture<?> reply, @NonNull String message) {
+            mReply = reply;
+            mMessage = message;
+        }
+
+        @Override
+        public void run() {
+            mReply.fail(new TimeoutException(mMessage));
+        }
+    }
+
+    private static final class AsyncDelivery implements Runnable {
+
+        @NonNull
+        private final Bus mBus;
+
+        @NonNull
+        private final Object mEvent;
+
+        @NonNull
+        private final Subscriber mSubscriber;
+
+
+        AsyncDelivery(@NonNull Bus bus, @NonNull Object event, @NonNull Subscriber subscriber) {
+            mBus = bus;
+            mEvent = event;
+            mSubscriber = subscriber;
+        }
+
+        @Override
+        public void run() {
+            if (mSubscriber.isValid()) {
+                mBus.invoke(mEvent, mSubscriber);
+            }
         }
     }
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import android.support.annotation.NonNull;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors shared by every bus which isn't given its own.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class BusExecutors {
+
+    private BusExecutors() {
+        throw new IllegalAccessError("no instances");
+    }
+
+    /**
+     * Shared pool of daemon threads, one per core, created the first time a bus needs it.
+     */
+    @NonNull
+    static Executor worker() {
+        return WorkerHolder.WORKER;
+    }
+
+    /**
+     * Whether the calling thread belongs to the {@link #worker()} pool.
+     */
+    static boolean isWorkerThread() {
+        return Thread.currentThread() instanceof WorkerThread;
+    }
+
+    private static final class WorkerHolder {
+
+        static final ExecutorService WORKER = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                    @NonNull
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(@NonNull Runnable runnable) {
+                        return new WorkerThread(runnable, "toot-worker-" + mCount.incrementAndGet());
+                    }
+                });
+    }
+
+    private static final class WorkerThread extends Thread {
+
+        WorkerThread(@NonNull Runnable runnable, @NonNull String name) {
+            super(runnable, name);
+            setDaemon(true);
+        }
+    }
+
+    /**
+     * Shared single daemon thread for timeouts, created the first time a bus needs it.
+     */
+    @NonNull
+    static ScheduledExecutorService scheduler() {
+        return SchedulerHolder.SCHEDULER;
+    }
+
+    private static final class SchedulerHolder {
+
+        static final ScheduledExecutorService SCHEDULER = newScheduler();
+
+        @NonNull
+        private static ScheduledExecutorService newScheduler() {
+            ScheduledThreadPoolExecutor scheduler =
+                    new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("toot-scheduler-"));
+            // Most timeouts are cancelled by a reply, don't keep them queued until they would have fired
+            scheduler.setRemoveOnCancelPolicy(true);
+            return scheduler;
+        }
+    }
+
+    /**
+     * Shared executor for subscribers which block, such as on I/O, to pass to {@link AsyncBus} or any bus taking an
+     * executor. Each task runs on a new virtual thread where the runtime has them, so thousands of blocked deliveries
+     * cost little memory. Otherwise tasks run on a pool of daemon threads which grows as needed and retires threads
+     * once idle.
+     */
+    @NonNull
+    @SuppressWarnings("unused")
+    public static Executor blocking() {
+        return BlockingHolder.BLOCKING;
+    }
+
+    private static final class BlockingHolder {
+
+        static final ExecutorService BLOCKING = newBlockingExecutor();
+
+        @NonNull
+        private static ExecutorService newBlockingExecutor() {
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+                // Virtual threads need Java 21, or are a disabled preview on 19 and 20
+                return Executors.newCachedThreadPool(new DaemonThreadFactory("toot-blocking-"));
+            }
+        }
+    }
+
+    static final class DaemonThreadFactory implements ThreadFactory {
+
+        @NonNull
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @NonNull
+        private final String mPrefix;
+
+
+        DaemonThreadFactory(@NonNull String prefix) {
+            mPrefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, mPrefix + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
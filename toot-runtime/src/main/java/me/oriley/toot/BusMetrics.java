@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Receives instrumentation callbacks from a {@link Bus}, see {@link Bus#setMetrics(BusMetrics)}. Callbacks are made
+ * inline on posting and delivering threads, so implementations must be thread safe and cheap.
+ *
+ * @see RecordingBusMetrics
+ */
+public interface BusMetrics {
+
+    /**
+     * An event was posted and queued for the given number of subscribers, including those of its supertypes.
+     */
+    void onPost(@NonNull Class<?> eventClass, int subscriberCount);
+
+    /**
+     * An event was posted with no subscribers, and is being reposted wrapped in a {@link DeadEvent}.
+     */
+    void onDeadEvent(@NonNull Class<?> eventClass);
+
+    /**
+     * An event was handed to a subscriber's asynchronous mailbox, which now holds {@code queueDepth} pending events.
+     */
+    void onQueued(@NonNull Class<?> eventClass, int queueDepth);
+
+    /**
+     * A full queue discarded an event, see {@link OverflowPolicy}.
+     */
+    void onDropped(@NonNull Class<?> eventClass);
+
+    /**
+     * A subscriber finished handling an event, whether or not it threw.
+     */
+    void onDelivered(@NonNull Class<?> eventClass, long durationNanos);
+}
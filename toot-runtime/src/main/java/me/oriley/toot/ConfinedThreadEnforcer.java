@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Allows access from a single owner thread only. A {@link Bus} recognises this enforcer when constructed and checks
+ * it with a thread identity comparison, rather than calling through the {@link ThreadEnforcer} interface. Subclasses
+ * may only choose the thread, {@link #enforce(Bus)} is final so the bus' inlined check always matches it.
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class ConfinedThreadEnforcer implements ThreadEnforcer {
+
+    @NonNull
+    private final Thread mThread;
+
+
+    /**
+     * Confines access to the thread creating the enforcer.
+     */
+    public ConfinedThreadEnforcer() {
+        this(Thread.currentThread());
+    }
+
+    public ConfinedThreadEnforcer(@NonNull Thread thread) {
+        mThread = thread;
+    }
+
+
+    @Override
+    public final void enforce(@NonNull Bus bus) {
+        if (Thread.currentThread() != mThread) {
+            throw newViolation(bus, mThread);
+        }
+    }
+
+    @NonNull
+    Thread getThread() {
+        return mThread;
+    }
+
+    @NonNull
+    static IllegalStateException newViolation(@NonNull Bus bus, @NonNull Thread thread) {
+        return new IllegalStateException("Event bus " + bus + " accessed from thread " + Thread.currentThread()
+                + ", confined to " + thread);
+    }
+}
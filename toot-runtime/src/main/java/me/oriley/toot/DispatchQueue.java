@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Per-thread FIFO of pending deliveries, stored as parallel event/subscriber ring buffers so that queueing a
+ * delivery does not allocate once the buffers have grown to the thread's peak nesting depth.
+ */
+final class DispatchQueue {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    @NonNull
+    private Object[] mEvents = new Object[INITIAL_CAPACITY];
+
+    @NonNull
+    private Subscriber[] mSubscribers = new Subscriber[INITIAL_CAPACITY];
+
+    private int mHead;
+    private int mTail;
+
+    boolean dispatching;
+
+
+    void offer(@NonNull Object event, @NonNull Subscriber subscriber) {
+        mEvents[mTail] = event;
+        mSubscribers[mTail] = subscriber;
+        mTail = (mTail + 1) & (mEvents.length - 1);
+        if (mTail == mHead) {
+            grow();
+        }
+    }
+
+    /**
+     * Replaces the newest pending event of the same class for the same subscriber if there is one, otherwise queues
+     * the event as {@link #offer(Object, Subscriber)} does.
+     */
+    void offerCoalescing(@NonNull Object event, @NonNull Subscriber subscriber) {
+        Class<?> eventClass = event.getClass();
+        int mask = mEvents.length - 1;
+        for (int i = (mTail - 1) & mask; i != ((mHead - 1) & mask); i = (i - 1) & mask) {
+            if (mSubscribers[i] == subscriber && mEvents[i].getClass() == eventClass) {
+                mEvents[i] = event;
+                return;
+            }
+        }
+        offer(event, subscriber);
+    }
+
+    boolean isEmpty() {
+        return mHead == mTail;
+    }
+
+    @NonNull
+    Object peekEvent() {
+        return mEvents[mHead];
+    }
+
+    @NonNull
+    Subscriber peekSubscriber() {
+        return mSubscribers[mHead];
+    }
+
+    void remove() {
+        mEvents[mHead] = null;
+        mSubscribers[mHead] = null;
+        mHead = (mHead + 1) & (mEvents.length - 1);
+    }
+
+    private void grow() {
+        int capacity = mEvents.length;
+        int headLength = capacity - mHead;
+
+        Object[] events = new Object[capacity << 1];
+        System.arraycopy(mEvents, mHead, events, 0, headLength);
+        System.arraycopy(mEvents, 0, events, headLength, mHead);
+
+        Subscriber[] subscribers = new Subscriber[capacity << 1];
+        System.arraycopy(mSubscribers, mHead, subscribers, 0, headLength);
+        System.arraycopy(mSubscribers, 0, subscribers, headLength, mHead);
+
+        mEvents = events;
+        mSubscribers = subscribers;
+        mHead = 0;
+        mTail = capacity;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import android.support.annotation.NonNull;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * Weak, identity based map key for a registered host. Hosts are matched by reference rather than by
+ * {@link Object#equals(Object)}, so hosts which override equality are still tracked separately, and the key does not
+ * keep its host reachable. Keys created with a queue are enqueued once their host is collected, and still match
+ * themselves afterwards so the stale registration can be removed.
+ */
+final class HostKey extends WeakReference<Object> {
+
+    private final int mHash;
+
+
+    HostKey(@NonNull Object host) {
+        super(host);
+        mHash = System.identityHashCode(host);
+    }
+
+    HostKey(@NonNull Object host, @NonNull ReferenceQueue<Object> queue) {
+        super(host, queue);
+        mHash = System.identityHashCode(host);
+    }
+
+
+    @Override
+    public int hashCode() {
+        return mHash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof HostKey)) {
+            return false;
+        }
+        Object host = get();
+        return host != null && host == ((HostKey) o).get();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything a single host has registered on a bus, so unregistering it only touches its own entries rather than
+ * every subscriber of every event type it handles.
+ */
+final class HostRegistration {
+
+    @NonNull
+    private final List<Subscriber> mSubscribers = new ArrayList<>();
+
+    @NonNull
+    private final List<SubscriberArray> mSubscriberArrays = new ArrayList<>();
+
+    @NonNull
+    private final List<Object> mSubscriberKeys = new ArrayList<>();
+
+    @NonNull
+    private final List<Class<?>> mProducedClasses = new ArrayList<>();
+
+    @NonNull
+    private final List<Producer> mProducers = new ArrayList<>();
+
+
+    synchronized void addSubscriber(@NonNull Subscriber subscriber,
+                                    @NonNull SubscriberArray array,
+                                    @Nullable Object key) {
+        mSubscribers.add(subscriber);
+        mSubscriberArrays.add(array);
+        mSubscriberKeys.add(key);
+    }
+
+    synchronized void addProducer(@NonNull Class<?> type, @NonNull Producer producer) {
+        mProducedClasses.add(type);
+        mProducers.add(producer);
+    }
+
+    @NonNull
+    synchronized Subscriber[] getSubscribers() {
+        return mSubscribers.toArray(new Subscriber[mSubscribers.size()]);
+    }
+
+    /**
+     * The array each of {@link #getSubscribers()} was added to.
+     */
+    @NonNull
+    synchronized SubscriberArray[] getSubscriberArrays() {
+        return mSubscriberArrays.toArray(new SubscriberArray[mSubscriberArrays.size()]);
+    }
+
+    /**
+     * The key each of {@link #getSubscribers()} was registered under, {@code null} where it was registered without.
+     */
+    @NonNull
+    synchronized Object[] getSubscriberKeys() {
+        return mSubscriberKeys.toArray(new Object[mSubscriberKeys.size()]);
+    }
+
+    @NonNull
+    synchronized Class<?>[] getProducedClasses() {
+        return mProducedClasses.toArray(new Class<?>[mProducedClasses.size()]);
+    }
+
+    @NonNull
+    synchronized Producer[] getProducers() {
+        return mProducers.toArray(new Producer[mProducers.size()]);
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Serial delivery queue for a single subscriber. At most one drain task is scheduled on the executor at a time, so
+ * events reach the subscriber in the order they were offered while different mailboxes drain in parallel.
+ * <p>
+ * Pending events are kept in an array ring guarded by the mailbox' monitor, holding at most {@code capacity} events
+ * before the {@link OverflowPolicy} applies.
+ */
+final class Mailbox implements Runnable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Yield the worker after this many deliveries so one busy subscriber can't starve the others
+    private static final int MAX_BATCH = 64;
+
+    @NonNull
+    private final Bus mBus;
+
+    @NonNull
+    private final Subscriber mSubscriber;
+
+    @NonNull
+    private final Executor mExecutor;
+
+    private final int mCapacity;
+
+    @NonNull
+    private final OverflowPolicy mPolicy;
+
+    @NonNull
+    private Object[] mEvents;
+
+    private int mHead;
+    private int mSize;
+    private boolean mScheduled;
+
+    @Nullable
+    private volatile Thread mDrainThread;
+
+
+    Mailbox(@NonNull Bus bus,
+            @NonNull Subscriber subscriber,
+            @NonNull Executor executor,
+            int capacity,
+            @NonNull OverflowPolicy policy) {
+        mBus = bus;
+        mSubscriber = subscriber;
+        mExecutor = executor;
+        mCapacity = capacity;
+        mPolicy = policy;
+
+        int initialCapacity = 1;
+        while (initialCapacity < Math.min(capacity, INITIAL_CAPACITY)) {
+            initialCapacity <<= 1;
+        }
+        mEvents = new Object[initialCapacity];
+    }
+
+    /**
+     * @param coalesce replace the newest pending event of the same class, if there is one
+     * @return the number of events pending, including this one if it was queued
+     */
+    int offer(@NonNull Object event, boolean coalesce) {
+        Object dropped = null;
+        boolean queue = true;
+        boolean schedule;
+        int depth;
+        synchronized (this) {
+            int index = coalesce ? lastIndexOf(event.getClass()) : -1;
+            if (index >= 0) {
+                mEvents[index] = event;
+                queue = false;
+            } else if (mSize >= mCapacity) {
+                switch (mPolicy) {
+                    case BLOCK:
+                        // Queue past capacity where waiting could never end
+                        if (mayBlock() && !awaitSpace()) {
+                            dropped = event;
+                            queue = false;
+                        }
+                        break;
+                    case DROP_OLDEST:
+                        dropped = removeFirst();
+                        break;
+                    case DROP_NEWEST:
+                        dropped = event;
+                        queue = false;
+                        break;
+                    case COALESCE:
+                        index = lastIndexOf(event.getClass());
+                        if (index >= 0) {
+                            dropped = mEvents[index];
+                            mEvents[index] = event;
+                            queue = false;
+                        } else {
+                            dropped = removeFirst();
+                        }
+                        break;
+                    case FAIL:
+                        throw new IllegalStateException("Mailbox for " + mSubscriber + " is full, " + mCapacity
+                                + " events pending.");
+                }
+            }
+
+            if (queue) {
+                addLast(event);
+            }
+            schedule = !mScheduled && mSize > 0;
+            mScheduled |= schedule;
+            depth = mSize;
+        }
+
+        if (dropped != null) {
+            mBus.onOverflow(dropped);
+        }
+        if (schedule) {
+            schedule();
+        }
+        return depth;
+    }
+
+    synchronized int size() {
+        return mSize;
+    }
+
+    private void schedule() {
+        try {
+            mExecutor.execute(this);
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                mScheduled = false;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void run() {
+        mDrainThread = Thread.currentThread();
+        try {
+            for (int i = 0; i < MAX_BATCH; i++) {
+                Object event;
+                synchronized (this) {
+                    if (mSize == 0) {
+                        break;
+                    }
+                    event = removeFirst();
+                    if (mPolicy == OverflowPolicy.BLOCK) {
+                        notifyAll();
+                    }
+                }
+
+                if (mSubscriber.isValid()) {
+                    mBus.invoke(event, mSubscriber);
+                }
+            }
+        } finally {
+            mDrainThread = null;
+            boolean reschedule;
+            synchronized (this) {
+                reschedule = mSize > 0;
+                mScheduled = reschedule;
+            }
+
+            // Also when the subscriber threw, otherwise offers would wait on a drain that is never scheduled
+            if (reschedule) {
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * Whether the calling thread can wait for space without deadlocking: it must not be draining this mailbox, nor a
+     * thread of the shared worker pool which could be the one the drain is queued behind.
+     */
+    private boolean mayBlock() {
+        if (mDrainThread == Thread.currentThread()) {
+            return false;
+        }
+        return !(BusExecutors.isWorkerThread() && mExecutor == BusExecutors.worker());
+    }
+
+    /**
+     * @return {@code false} if interrupted while waiting, with the interrupt flag restored
+     */
+    private boolean awaitSpace() {
+        try {
+            while (mSize >= mCapacity) {
+                wait();
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void addLast(@NonNull Object event) {
+        if (mSize == mEvents.length) {
+            Object[] events = new Object[mEvents.length << 1];
+            int headLength = Math.min(mSize, mEvents.length - mHead);
+            System.arraycopy(mEvents, mHead, events, 0, headLength);
+            System.arraycopy(mEvents, 0, events, headLength, mSize - headLength);
+            mEvents = events;
+            mHead = 0;
+        }
+        mEvents[(mHead + mSize) & (mEvents.length - 1)] = event;
+        mSize++;
+    }
+
+    @NonNull
+    private Object removeFirst() {
+        Object event = mEvents[mHead];
+        mEvents[mHead] = null;
+        mHead = (mHead + 1) & (mEvents.length - 1);
+        mSize--;
+        return event;
+    }
+
+    private int lastIndexOf(@NonNull Class<?> eventClass) {
+        for (int i = mSize - 1; i >= 0; i--) {
+            int index = (mHead + i) & (mEvents.length - 1);
+            if (mEvents[index].getClass() == eventClass) {
+                return index;
+            }
+        }
+        return -1;
+    }
+}
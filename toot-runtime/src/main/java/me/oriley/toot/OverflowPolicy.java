@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+/**
+ * What a bounded queue does with an event when it is already full.
+ *
+ * @see Bus#setMailboxCapacity(int, OverflowPolicy)
+ * @see RingBufferBus
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Block the posting thread until there is space. A thread never blocks on a queue it is itself draining, nor on a
+     * subscriber queue drained by the bus' shared default executor when it is one of that executor's threads. Either
+     * could wait forever, so the event is queued beyond capacity instead.
+     * <p>
+     * Any other executor whose own threads post to buses using it may still deadlock under this policy once all of
+     * its threads are waiting on full queues whose drains are queued behind them. Such executors should use another
+     * policy, or enough threads to always leave one free to drain.
+     */
+    BLOCK,
+
+    /**
+     * Discard the oldest pending event to make room.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Discard the event being posted.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Replace the most recently queued pending event of the same class, or discard the oldest pending event if there
+     * is none. Not supported by {@link RingBufferBus}.
+     */
+    COALESCE,
+
+    /**
+     * Throw an {@link IllegalStateException} from the posting thread.
+     */
+    FAIL
+}
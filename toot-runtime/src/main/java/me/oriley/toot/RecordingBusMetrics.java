@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import android.support.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link BusMetrics} which aggregates counts per event class using striped counters, and handler durations and
+ * mailbox depths in log-linear histograms. Recording never blocks or allocates once an event class has been seen;
+ * {@link #snapshot()} returns a point in time copy for export.
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class RecordingBusMetrics implements BusMetrics {
+
+    @NonNull
+    private final ConcurrentMap<Class<?>, EventRecorder> mRecorders = new ConcurrentHashMap<>();
+
+    @NonNull
+    private final Histogram mQueueDepth = new Histogram();
+
+
+    @Override
+    public void onPost(@NonNull Class<?> eventClass, int subscriberCount) {
+        EventRecorder recorder = recorderFor(eventClass);
+        recorder.posts.increment();
+        recorder.fanOut.add(subscriberCount);
+    }
+
+    @Override
+    public void onDeadEvent(@NonNull Class<?> eventClass) {
+        recorderFor(eventClass).deadEvents.increment();
+    }
+
+    @Override
+    public void onQueued(@NonNull Class<?> eventClass, int queueDepth) {
+        mQueueDepth.record(queueDepth);
+    }
+
+    @Override
+    public void onDropped(@NonNull Class<?> eventClass) {
+        recorderFor(eventClass).dropped.increment();
+    }
+
+    @Override
+    public void onDelivered(@NonNull Class<?> eventClass, long durationNanos) {
+        recorderFor(eventClass).handlerNanos.record(durationNanos);
+    }
+
+    @NonNull
+    public Snapshot snapshot() {
+        Map<Class<?>, EventStats> events = new HashMap<>();
+        for (Map.Entry<Class<?>, EventRecorder> entry : mRecorders.entrySet()) {
+            EventRecorder recorder = entry.getValue();
+            events.put(entry.getKey(), new EventStats(recorder.posts.sum(),
+                    recorder.fanOut.sum(),
+                    recorder.deadEvents.sum(),
+                    recorder.dropped.sum(),
+                    recorder.handlerNanos.snapshot()));
+        }
+        return new Snapshot(Collections.unmodifiableMap(events), mQueueDepth.snapshot());
+    }
+
+    @NonNull
+    private EventRecorder recorderFor(@NonNull Class<?> eventClass) {
+        EventRecorder recorder = mRecorders.get(eventClass);
+        if (recorder == null) {
+            EventRecorder created = new EventRecorder();
+            recorder = mRecorders.putIfAbsent(eventClass, created);
+            if (recorder == null) {
+                recorder = created;
+            }
+        }
+        return recorder;
+    }
+
+    private static final class EventRecorder {
+
+        @NonNull
+        final StripedCounter posts = new StripedCounter();
+
+        @NonNull
+        final StripedCounter fanOut = new StripedCounter();
+
+        @NonNull
+        final StripedCounter deadEvents = new StripedCounter();
+
+        @NonNull
+        final StripedCounter dropped = new StripedCounter();
+
+        @NonNull
+        final Histogram handlerNanos = new Histogram();
+    }
+
+    public static final class Snapshot {
+
+        /**
+         * Statistics keyed by the concrete class of the posted event.
+         */
+        @NonNull
+        public final Map<Class<?>, EventStats> events;
+
+        /**
+         * Depth of subscriber mailboxes each time an event was queued for asynchronous delivery.
+         */
+        @NonNull
+        public final Distribution queueDepth;
+
+
+        Snapshot(@NonNull Map<Class<?>, EventStats> events, @NonNull Distribution queueDepth) {
+            this.events = events;
+            this.queueDepth = queueDepth;
+        }
+    }
+
+    public static final class EventStats {
+
+        public final long posts;
+
+        /**
+         * Total subscribers notified across all posts, divide by {@link #posts} for the average fan-out.
+         */
+        public final long deliveriesQueued;
+
+        public final long deadEvents;
+
+        /**
+         * Events discarded by a full queue, see {@link OverflowPolicy}.
+         */
+        public final long dropped;
+
+        /**
+         * Time spent in subscriber methods, in nanoseconds. Its count is the number of completed deliveries.
+         */
+        @NonNull
+        public final Distribution handlerNanos;
+
+
+        EventStats(long posts,
+                   long deliveriesQueued,
+                   long deadEvents,
+                   long dropped,
+                   @NonNull Distribution handlerNanos) {
+            this.posts = posts;
+            this.deliveriesQueued = deliveriesQueued;
+            this.deadEvents = deadEvents;
+            this.dropped = dropped;
+            this.handlerNanos = handlerNanos;
+        }
+    }
+
+    public static final class Distribution {
+
+        @NonNull
+        private final long[] mCounts;
+
+        public final long count;
+
+        public final long sum;
+
+        public final long max;
+
+
+        Distribution(@NonNull long[] counts, long count, long sum, long max) {
+            mCounts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public double getMean() {
+            return count > 0 ? (double) sum / count : 0;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return an upper bound of the value at the given percentile, within the histogram's precision
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+
+            long target = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100) / 100));
+            long seen = 0;
+            for (int i = 0; i < mCounts.length; i++) {
+                seen += mCounts[i];
+                if (seen >= target) {
+                    return Math.min(Histogram.highestValueIn(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The pending reply to a {@link Request}. The first of a reply, failure, timeout or cancellation completes it and
+ * later attempts are ignored. Listeners are notified once it completes, so callers need not block in {@link #get()}.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ReplyFuture<R> implements Future<R> {
+
+    public interface Listener<R> {
+
+        void onReply(@Nullable R reply);
+
+        void onFailure(@NonNull Throwable failure);
+    }
+
+    @NonNull
+    private final CountDownLatch mLatch = new CountDownLatch(1);
+
+    // Guarded by this until the latch is released, after which they never change
+    @Nullable
+    private List<Runnable> mListeners = new ArrayList<>();
+
+    @Nullable
+    private Future<?> mTimeout;
+
+    private boolean mDone;
+
+    @Nullable
+    private R mReply;
+
+    @Nullable
+    private Throwable mFailure;
+
+    private boolean mCancelled;
+
+
+    ReplyFuture() {
+    }
+
+
+    /**
+     * Notifies the listener on the completing thread, or straight away on the calling thread if already complete.
+     */
+    @SuppressWarnings("unused")
+    public void addListener(@NonNull Listener<? super R> listener) {
+        addListener(listener, DirectExecutor.INSTANCE);
+    }
+
+    @SuppressWarnings("unused")
+    public void addListener(@NonNull final Listener<? super R> listener, @NonNull final Executor executor) {
+        final Runnable notification = new Runnable() {
+            @Override
+            public void run() {
+                if (mFailure != null) {
+                    listener.onFailure(mFailure);
+                } else if (mCancelled) {
+                    listener.onFailure(new CancellationException());
+                } else {
+                    listener.onReply(mReply);
+                }
+            }
+        };
+        Runnable delivery = new Runnable() {
+            @Override
+            public void run() {
+                executor.execute(notification);
+            }
+        };
+
+        synchronized (this) {
+            if (mListeners != null) {
+                mListeners.add(delivery);
+                return;
+            }
+        }
+        delivery.run();
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return complete(null, null, true);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return isDone() && mCancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return mLatch.getCount() == 0;
+    }
+
+    @Override
+    public R get() throws InterruptedException, ExecutionException {
+        mLatch.await();
+        return getNow();
+    }
+
+    @Override
+    public R get(long timeout, @NonNull TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!mLatch.await(timeout, unit)) {
+            throw new TimeoutException("No reply within " + timeout + " " + unit);
+        }
+        return getNow();
+    }
+
+    boolean reply(@Nullable R reply) {
+        return complete(reply, null, false);
+    }
+
+    boolean fail(@NonNull Throwable failure) {
+        return complete(null, failure, false);
+    }
+
+    /**
+     * Cancelled on completion, so a reply doesn't leave its timeout scheduled.
+     */
+    void setTimeout(@NonNull Future<?> timeout) {
+        synchronized (this) {
+            if (!mDone) {
+                mTimeout = timeout;
+                return;
+            }
+        }
+        timeout.cancel(false);
+    }
+
+    private boolean complete(@Nullable R reply, @Nullable Throwable failure, boolean cancelled) {
+        List<Runnable> listeners;
+        Future<?> timeout;
+        synchronized (this) {
+            if (mDone) {
+                return false;
+            }
+            mDone = true;
+            mReply = reply;
+            mFailure = failure;
+            mCancelled = cancelled;
+            listeners = mListeners;
+            mListeners = null;
+            timeout = mTimeout;
+            mTimeout = null;
+        }
+        mLatch.countDown();
+
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
+        //noinspection ConstantConditions
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+        return true;
+    }
+
+    private R getNow() throws ExecutionException {
+        if (mFailure != null) {
+            throw new ExecutionException(mFailure);
+        }
+        if (mCancelled) {
+            throw new CancellationException();
+        }
+        return mReply;
+    }
+
+    private enum DirectExecutor implements Executor {
+        INSTANCE;
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Base class for events which expect a reply, sent with {@link Bus#request(Request, long, java.util.concurrent.TimeUnit)}.
+ * Subscribers answer with {@link #reply(Object)}, either while handling the event or later from any thread, so a
+ * responder can hand off to I/O without holding up dispatch. Only the first reply counts, and a request posted to no
+ * subscribers fails straight away rather than waiting for its timeout.
+ * <p>
+ * Each request may only be sent once.
+ */
+@SuppressWarnings("WeakerAccess")
+public abstract class Request<R> {
+
+    @NonNull
+    private final ReplyFuture<R> mReply = new ReplyFuture<>();
+
+    @NonNull
+    private final AtomicBoolean mSent = new AtomicBoolean();
+
+
+    /**
+     * @return {@code true} if this was the first reply or failure, {@code false} if the request was already complete
+     */
+    @SuppressWarnings("unused")
+    public final boolean reply(@Nullable R reply) {
+        return mReply.reply(reply);
+    }
+
+    @SuppressWarnings("unused")
+    public final boolean fail(@NonNull Throwable failure) {
+        return mReply.fail(failure);
+    }
+
+    /**
+     * Whether the request has been replied to, failed, timed out or cancelled, so responders can skip wasted work.
+     */
+    @SuppressWarnings("unused")
+    public final boolean isDone() {
+        return mReply.isDone();
+    }
+
+    @NonNull
+    public final ReplyFuture<R> getReply() {
+        return mReply;
+    }
+
+    final boolean markSent() {
+        return mSent.compareAndSet(false, true);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, preallocated multi-producer multi-consumer queue. Each slot carries a sequence number which tells
+ * producers and consumers whether it is free or published for their position, so claiming a slot takes a single
+ * compare-and-set and nothing is allocated per element.
+ */
+final class RingBuffer {
+
+    // Keep the two cursors on separate cache lines, away from neighbouring objects
+    private static final int PADDING = 8;
+    private static final int TAIL = PADDING;
+    private static final int HEAD = PADDING * 2;
+
+    @NonNull
+    private final Object[] mEntries;
+
+    @NonNull
+    private final AtomicLongArray mSequences;
+
+    @NonNull
+    private final AtomicLongArray mCursors = new AtomicLongArray(PADDING * 3);
+
+    private final int mMask;
+
+
+    RingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two, was " + capacity);
+        }
+
+        mEntries = new Object[capacity];
+        mSequences = new AtomicLongArray(capacity);
+        mMask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            mSequences.set(i, i);
+        }
+    }
+
+
+    /**
+     * @return {@code false} if the buffer is full
+     */
+    boolean offer(@NonNull Object entry) {
+        long tail = mCursors.get(TAIL);
+        while (true) {
+            int index = (int) tail & mMask;
+            long available = mSequences.get(index) - tail;
+            if (available == 0) {
+                if (mCursors.compareAndSet(TAIL, tail, tail + 1)) {
+                    mEntries[index] = entry;
+                    mSequences.lazySet(index, tail + 1);
+                    return true;
+                }
+            } else if (available < 0) {
+                return false;
+            }
+            tail = mCursors.get(TAIL);
+        }
+    }
+
+    /**
+     * @return the oldest entry, or {@code null} if the buffer is empty
+     */
+    @Nullable
+    Object poll() {
+        long head = mCursors.get(HEAD);
+        while (true) {
+            int index = (int) head & mMask;
+            long available = mSequences.get(index) - (head + 1);
+            if (available == 0) {
+                if (mCursors.compareAndSet(HEAD, head, head + 1)) {
+                    Object entry = mEntries[index];
+                    mEntries[index] = null;
+                    mSequences.lazySet(index, head + mEntries.length);
+                    return entry;
+                }
+            } else if (available < 0) {
+                return null;
+            }
+            head = mCursors.get(HEAD);
+        }
+    }
+
+    int size() {
+        long size = mCursors.get(TAIL) - mCursors.get(HEAD);
+        return (int) Math.max(0, Math.min(size, mEntries.length));
+    }
+
+    int capacity() {
+        return mEntries.length;
+    }
+}
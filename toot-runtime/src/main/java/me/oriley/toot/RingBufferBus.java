@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bus whose {@link #post(Object)} only publishes the event into a preallocated lock-free ring buffer. Dedicated
+ * consumer threads drain the ring in batches and dispatch each event as {@link Bus} would on the posting thread, so
+ * {@link ThreadMode#POSTING} subscribers run on a consumer thread. Posting thread latency is a single slot claim,
+ * unless the ring is full, in which case the bus' {@link OverflowPolicy} applies. {@link OverflowPolicy#BLOCK}, the
+ * default, waits for space using the bus' {@link WaitStrategy}.
+ * <p>
+ * With a single consumer, events are dispatched in the order they were published. With more than one, events
+ * published close together may be dispatched concurrently and out of order. Events posted from a consumer thread are
+ * dispatched on that thread after the current event, as with a plain bus.
+ */
+@SuppressWarnings("WeakerAccess")
+public class RingBufferBus extends Bus {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int MAX_BATCH = 256;
+
+    @NonNull
+    private final RingBuffer mRing;
+
+    @NonNull
+    private final WaitStrategy mWaitStrategy;
+
+    @NonNull
+    private final OverflowPolicy mOverflowPolicy;
+
+    @NonNull
+    private final Thread[] mConsumers;
+
+    private volatile boolean mShutdown;
+
+
+    @SuppressWarnings("unused")
+    public RingBufferBus() {
+        this(DEFAULT);
+    }
+
+    @SuppressWarnings("unused")
+    public RingBufferBus(@NonNull String tag) {
+        this(tag, DEFAULT_CAPACITY, 1, WaitStrategy.PARK);
+    }
+
+    /**
+     * @param capacity  number of slots in the ring, must be a power of two
+     * @param consumers number of dedicated threads dispatching events
+     */
+    public RingBufferBus(@NonNull String tag, int capacity, int consumers, @NonNull WaitStrategy waitStrategy) {
+        this(tag, capacity, consumers, waitStrategy, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * @param overflowPolicy what to do when posting to a full ring, {@link OverflowPolicy#COALESCE} is not supported
+     */
+    public RingBufferBus(@NonNull String tag,
+                         int capacity,
+                         int consumers,
+                         @NonNull WaitStrategy waitStrategy,
+                         @NonNull OverflowPolicy overflowPolicy) {
+        this(ThreadEnforcer.ANY, tag, capacity, consumers, waitStrategy, overflowPolicy, BusExecutors.worker(), null);
+    }
+
+    public RingBufferBus(@NonNull ThreadEnforcer enforcer,
+                         @NonNull String tag,
+                         int capacity,
+                         int consumers,
+                         @NonNull WaitStrategy waitStrategy,
+                         @NonNull OverflowPolicy overflowPolicy,
+                         @NonNull Executor executor,
+                         @Nullable MainThreadSupport mainThreadSupport) {
+        super(enforcer, tag, executor, mainThreadSupport);
+        if (consumers < 1) {
+            throw new IllegalArgumentException("Consumer count must be positive, was " + consumers);
+        }
+        if (overflowPolicy == OverflowPolicy.COALESCE) {
+            throw new IllegalArgumentException("RingBufferBus does not support " + overflowPolicy);
+        }
+
+        mRing = new RingBuffer(capacity);
+        mWaitStrategy = waitStrategy;
+        mOverflowPolicy = overflowPolicy;
+
+        ThreadFactory threadFactory = new BusExecutors.DaemonThreadFactory(tag + "-consumer-");
+        mConsumers = new Thread[consumers];
+        for (int i = 0; i < consumers; i++) {
+            mConsumers[i] = threadFactory.newThread(new Consumer());
+        }
+        for (Thread consumer : mConsumers) {
+            consumer.start();
+        }
+    }
+
+
+    @Override
+    public <E> void post(@NonNull E event) {
+        enforceThread();
+        publish(event, null);
+    }
+
+    @Override
+    public <E> void post(@NonNull E event, @NonNull Object key) {
+        enforceThread();
+        publish(event, key);
+    }
+
+    @Override
+    public void postAll(@NonNull Iterable<?> events) {
+        enforceThread();
+
+        for (Object event : events) {
+            publish(event, null);
+        }
+    }
+
+    /**
+     * Retains the event before publishing it as {@link Bus#postSticky(Object)} does, once the bus is known to accept
+     * it, so a post rejected after {@link #shutdown()} leaves nothing behind.
+     */
+    @Override
+    public <E> void postSticky(@NonNull E event) {
+        enforceThread();
+        checkNotShutdown();
+        super.postSticky(event);
+    }
+
+    /**
+     * Events published but not yet taken by a consumer.
+     */
+    @SuppressWarnings("unused")
+    public int getPendingCount() {
+        return mRing.size();
+    }
+
+    /**
+     * Events waiting in the ring as well as those queued for asynchronous delivery to subscribers.
+     */
+    @Override
+    public int getQueuedEventCount() {
+        return mRing.size() + super.getQueuedEventCount();
+    }
+
+    /**
+     * Stops accepting events. Consumers exit once they have dispatched everything already published.
+     */
+    @SuppressWarnings("unused")
+    public void shutdown() {
+        mShutdown = true;
+        for (Thread consumer : mConsumers) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Waits for consumers to exit after {@link #shutdown()}.
+     *
+     * @return {@code true} if every consumer exited within the timeout
+     */
+    @SuppressWarnings("unused")
+    public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread consumer : mConsumers) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining > 0) {
+                TimeUnit.NANOSECONDS.timedJoin(consumer, remaining);
+            }
+            if (consumer.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void publish(@NonNull Object event, @Nullable Object key) {
+        checkNotShutdown();
+
+        if (isConsumerThread()) {
+            // Waiting for space here could deadlock if this is the only consumer
+            dispatchPosted(event, key);
+            return;
+        }
+
+        if (key != null) {
+            event = new KeyedEvent(event, key);
+        }
+
+        int attempt = 0;
+        while (!mRing.offer(event)) {
+            checkNotShutdown();
+
+            switch (mOverflowPolicy) {
+                case DROP_OLDEST:
+                    Object oldest = mRing.poll();
+                    if (oldest instanceof KeyedEvent) {
+                        oldest = ((KeyedEvent) oldest).event;
+                    }
+                    if (oldest != null) {
+                        onOverflow(oldest);
+                    }
+                    break;
+                case DROP_NEWEST:
+                    onOverflow(event instanceof KeyedEvent ? ((KeyedEvent) event).event : event);
+                    return;
+                case FAIL:
+                    throw new IllegalStateException(this + " is full, " + mRing.capacity() + " events pending.");
+                default:
+                    mWaitStrategy.idle(++attempt);
+                    break;
+            }
+        }
+    }
+
+    private void checkNotShutdown() {
+        if (mShutdown) {
+            throw new IllegalStateException(this + " has been shut down.");
+        }
+    }
+
+    private boolean isConsumerThread() {
+        Thread thread = Thread.currentThread();
+        for (Thread consumer : mConsumers) {
+            if (consumer == thread) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final class Consumer implements Runnable {
+
+        @Override
+        public void run() {
+            Object[] batch = new Object[MAX_BATCH];
+            int idle = 0;
+            while (true) {
+                int count = 0;
+                Object event;
+                while (count < MAX_BATCH && (event = mRing.poll()) != null) {
+                    batch[count++] = event;
+                }
+
+                if (count > 0) {
+                    idle = 0;
+                    dispatchBatch(batch, count);
+                    Arrays.fill(batch, 0, count, null);
+                } else if (mShutdown) {
+                    // Events published before shutdown are only guaranteed visible after reading the flag
+                    if (mRing.size() == 0) {
+                        return;
+                    }
+                } else {
+                    if (idle < Integer.MAX_VALUE) {
+                        idle++;
+                    }
+                    mWaitStrategy.idle(idle);
+                }
+            }
+        }
+
+        private void dispatchBatch(@NonNull Object[] batch, int count) {
+            while (true) {
+                try {
+                    dispatchAll(batch, count);
+                    return;
+                } catch (RuntimeException e) {
+                    // Report and carry on draining whatever the failed delivery left queued
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                    count = 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Checks only one in every {@code interval} accesses with another enforcer, to catch threading mistakes in debug
+ * builds without paying for a check on every post. The sample counter is deliberately unsynchronised, so under
+ * concurrent access the interval is approximate.
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class SamplingThreadEnforcer implements ThreadEnforcer {
+
+    @NonNull
+    private final ThreadEnforcer mDelegate;
+
+    private final int mInterval;
+
+    private int mCount;
+
+
+    public SamplingThreadEnforcer(@NonNull ThreadEnforcer delegate, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval must be positive, was " + interval);
+        }
+        mDelegate = delegate;
+        mInterval = interval;
+    }
+
+
+    @Override
+    public void enforce(@NonNull Bus bus) {
+        if (++mCount >= mInterval) {
+            mCount = 0;
+            mDelegate.enforce(bus);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+/**
+ * A bus which partitions subscribers and producers by event type across a number of internal shards, so threads
+ * posting and registering for unrelated event types don't contend on the same registry. Hosts register and unregister
+ * as usual, and are split across the shards owning the event types they handle. Factory and class hierarchy lookups
+ * are resolved and cached once by the outer bus on behalf of every shard. The outer bus also keeps sticky events, so
+ * they replay to subscribers of their supertypes owned by other shards.
+ * <p>
+ * Posts are queued and drained by the outer bus on a single queue per thread, looking up subscribers of each type in
+ * the shard owning it, so events posted from subscribers and batches are dispatched in the same order as on a
+ * {@link Bus}. Deliveries go through the owning shard's mailboxes.
+ */
+@SuppressWarnings("WeakerAccess")
+public class ShardedBus extends Bus {
+
+    @NonNull
+    private final Shard[] mShards;
+
+    @NonNull
+    private final ConcurrentMap<Class<?>, Shard[]> mHostRouteCache = new ConcurrentHashMap<>();
+
+
+    @SuppressWarnings("unused")
+    public ShardedBus() {
+        this(DEFAULT);
+    }
+
+    @SuppressWarnings("unused")
+    public ShardedBus(@NonNull String tag) {
+        this(ThreadEnforcer.ANY, tag, Runtime.getRuntime().availableProcessors(), BusExecutors.worker(), null);
+    }
+
+    @SuppressWarnings("unused")
+    public ShardedBus(@NonNull String tag, int shardCount) {
+        this(ThreadEnforcer.ANY, tag, shardCount, BusExecutors.worker(), null);
+    }
+
+    public ShardedBus(@NonNull ThreadEnforcer enforcer,
+                      @NonNull String tag,
+                      int shardCount,
+                      @NonNull Executor executor,
+                      @Nullable MainThreadSupport mainThreadSupport) {
+        super(enforcer, tag, executor, mainThreadSupport);
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive, was " + shardCount);
+        }
+
+        mShards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            mShards[i] = new Shard(this, tag + "-" + i, executor, mainThreadSupport, i, shardCount);
+        }
+    }
+
+
+    @Override
+    public void setMetrics(@Nullable BusMetrics metrics) {
+        super.setMetrics(metrics);
+        for (Shard shard : mShards) {
+            shard.setMetrics(metrics);
+        }
+    }
+
+    @Override
+    public void setMailboxCapacity(int capacity, @NonNull OverflowPolicy policy) {
+        super.setMailboxCapacity(capacity, policy);
+        for (Shard shard : mShards) {
+            shard.setMailboxCapacity(capacity, policy);
+        }
+    }
+
+    @Override
+    public void setCoalesced(@NonNull Class<?> eventClass, boolean coalesced) {
+        super.setCoalesced(eventClass, coalesced);
+        for (Shard shard : mShards) {
+            shard.setCoalesced(eventClass, coalesced);
+        }
+    }
+
+    @Override
+    public int getQueuedEventCount() {
+        int count = 0;
+        for (Shard shard : mShards) {
+            count += shard.getQueuedEventCount();
+        }
+        return count;
+    }
+
+    @Override
+    public long getDroppedEventCount() {
+        long count = 0;
+        for (Shard shard : mShards) {
+            count += shard.getDroppedEventCount();
+        }
+        return count;
+    }
+
+    @Override
+    void preloadEventType(@NonNull Class<?> eventType) {
+        flattenEventHierarchy(eventType);
+        shardFor(eventType).preloadEventType(eventType);
+    }
+
+    @Override
+    public void register(@NonNull Object object, @Nullable Object key, @Nullable EventFilter filter) {
+        enforceThread();
+
+        for (Shard shard : hostRouteFor(object.getClass())) {
+            shard.register(object, key, filter);
+        }
+    }
+
+    @Override
+    public void unregister(@NonNull Object object) {
+        enforceThread();
+
+        for (Shard shard : hostRouteFor(object.getClass())) {
+            shard.unregister(object);
+        }
+    }
+
+    @Nullable
+    @Override
+    SubscriberArray getSubscribers(@NonNull Class<?> type) {
+        return shardFor(type).getSubscribers(type);
+    }
+
+    @Nullable
+    @Override
+    SubscriberArray getKeyedSubscribers(@NonNull Class<?> type, @NonNull Object key) {
+        return shardFor(type).getKeyedSubscribers(type, key);
+    }
+
+    @Override
+    void deliver(@NonNull Object event, @NonNull Subscriber subscriber) {
+        shardFor(subscriber.getEventClass()).deliver(event, subscriber);
+    }
+
+    @Override
+    boolean releaseCollectedHost(@NonNull Reference<?> key) {
+        // A collected host's key only equals itself, so only the shard it was registered on holds it
+        for (Shard shard : mShards) {
+            if (shard.releaseCollectedHost(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The shards owning any of the event types hosts of the given class subscribe to or produce, in shard order.
+     */
+    @NonNull
+    private Shard[] hostRouteFor(@NonNull Class<?> hostClass) {
+        Shard[] route = mHostRouteCache.get(hostClass);
+        if (route == null) {
+            Shard[] routeCreation = ownersOf(getHandledEventTypes(hostClass));
+            route = mHostRouteCache.putIfAbsent(hostClass, routeCreation);
+            if (route == null) {
+                route = routeCreation;
+            }
+        }
+        return route;
+    }
+
+    @NonNull
+    private Shard[] ownersOf(@NonNull Collection<Class<?>> types) {
+        boolean[] owners = new boolean[mShards.length];
+        for (Class<?> type : types) {
+            owners[shardIndex(type, mShards.length)] = true;
+        }
+
+        List<Shard> shards = new ArrayList<>();
+        for (int i = 0; i < owners.length; i++) {
+            if (owners[i]) {
+                shards.add(mShards[i]);
+            }
+        }
+        return shards.toArray(new Shard[shards.size()]);
+    }
+
+    @NonNull
+    private Shard shardFor(@NonNull Class<?> type) {
+        return mShards[shardIndex(type, mShards.length)];
+    }
+
+    private static int shardIndex(@NonNull Class<?> type, int shardCount) {
+        int hash = type.hashCode();
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % shardCount;
+    }
+
+    private static final class Shard extends Bus {
+
+        @NonNull
+        private final ShardedBus mOwner;
+
+        private final int mIndex;
+        private final int mShardCount;
+
+
+        Shard(@NonNull ShardedBus owner,
+              @NonNull String tag,
+              @NonNull Executor executor,
+              @Nullable MainThreadSupport mainThreadSupport,
+              int index,
+              int shardCount) {
+            super(ThreadEnforcer.ANY, tag, executor, mainThreadSupport);
+            mOwner = owner;
+            mIndex = index;
+            mShardCount = shardCount;
+        }
+
+
+        @Override
+        boolean acceptsEventType(@NonNull Class<?> type) {
+            return shardIndex(type, mShardCount) == mIndex;
+        }
+
+        @Nullable
+        @Override
+        SubscriberFactory findSubscriberFactoryForClass(@NonNull Class<?> cls) {
+            return mOwner.findSubscriberFactoryForClass(cls);
+        }
+
+        @Nullable
+        @Override
+        ProducerFactory findProducerFactoryForClass(@NonNull Class<?> cls) {
+            return mOwner.findProducerFactoryForClass(cls);
+        }
+
+        @NonNull
+        @Override
+        Class<?>[] flattenHostHierarchy(@NonNull Class<?> concreteClass) {
+            return mOwner.flattenHostHierarchy(concreteClass);
+        }
+
+        @NonNull
+        @Override
+        Class<?>[] flattenEventHierarchy(@NonNull Class<?> concreteClass) {
+            return mOwner.flattenEventHierarchy(concreteClass);
+        }
+
+        @Nullable
+        @Override
+        Map<Class<?>, Object> getStickyEvents(@NonNull Class<?> type) {
+            return mOwner.getStickyEvents(type);
+        }
+
+        @NonNull
+        @Override
+        ReferenceQueue<Object> getCollectedHosts() {
+            return mOwner.getCollectedHosts();
+        }
+
+        @Override
+        void expungeCollectedHosts() {
+            mOwner.expungeCollectedHosts();
+        }
+    }
+}
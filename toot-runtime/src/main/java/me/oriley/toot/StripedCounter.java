@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter spread over cache line padded cells picked by thread, so threads incrementing concurrently rarely contend
+ * on the same line. Reads sum every cell and are not atomic with respect to concurrent updates.
+ */
+final class StripedCounter {
+
+    // Longs per 64 byte cache line, only the first slot of each line is used
+    private static final int PADDING = 8;
+
+    private static final int STRIPES = stripeCount();
+
+    private final AtomicLongArray mCells = new AtomicLongArray(STRIPES * PADDING);
+
+
+    void increment() {
+        add(1);
+    }
+
+    void add(long delta) {
+        mCells.getAndAdd(stripe(), delta);
+    }
+
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += mCells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    private static int stripe() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return (hash >>> 16 & (STRIPES - 1)) * PADDING;
+    }
+
+    private static int stripeCount() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int stripes = 1;
+        while (stripes < cpus * 2 && stripes < 64) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Subscribers for a single event type, sorted by descending priority. Readers take a {@link Snapshot} with a single
+ * volatile read and never block. Writers are serialised on the array's monitor, which only registration and
+ * unregistration of the same event type contend on.
+ * <p>
+ * Snapshots share a backing array with spare capacity. A subscriber whose priority is no higher than the last one's
+ * is written into the next free slot and published as a snapshot one entry longer, so registering many subscribers
+ * of equal priority costs amortised constant time each. Inserting ahead of lower priority subscribers still copies
+ * the array. Entries within a published snapshot are never written again.
+ * <p>
+ * Every {@link Subscriber} is a distinct instance added once, so membership is by identity and needs no duplicate
+ * scan. Removal only invalidates the subscriber, which posting already skips. The array is compacted once invalidated
+ * entries make up half of it, so a burst of unregistrations costs amortised constant time each rather than a copy.
+ */
+final class SubscriberArray {
+
+    private static final int MIN_CAPACITY = 4;
+
+    private static final Snapshot EMPTY = new Snapshot(new Subscriber[0], 0);
+
+    @NonNull
+    private volatile Snapshot mSnapshot = EMPTY;
+
+    // Guarded by this
+    private int mStaleCount;
+
+
+    @NonNull
+    Snapshot snapshot() {
+        return mSnapshot;
+    }
+
+    /**
+     * Whether every subscriber added has since been invalidated.
+     */
+    boolean isEmpty() {
+        Snapshot snapshot = mSnapshot;
+        for (int i = 0; i < snapshot.size; i++) {
+            if (snapshot.subscribers[i].isValid()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    synchronized void add(@NonNull Subscriber subscriber) {
+        Snapshot current = mSnapshot;
+        Subscriber[] subscribers = current.subscribers;
+        int size = current.size;
+        int priority = subscriber.getPriority();
+
+        if (size == 0 || subscribers[size - 1].getPriority() >= priority) {
+            if (size == subscribers.length) {
+                Subscriber[] grown = new Subscriber[Math.max(MIN_CAPACITY, size << 1)];
+                System.arraycopy(subscribers, 0, grown, 0, size);
+                subscribers = grown;
+            }
+            subscribers[size] = subscriber;
+            mSnapshot = new Snapshot(subscribers, size + 1);
+            return;
+        }
+
+        // Insert after any subscribers of equal priority to keep registration order
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (subscribers[mid].getPriority() >= priority) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        Subscriber[] next = new Subscriber[Math.max(MIN_CAPACITY, (size + 1) << 1)];
+        System.arraycopy(subscribers, 0, next, 0, low);
+        next[low] = subscriber;
+        System.arraycopy(subscribers, low, next, low + 1, size - low);
+        mSnapshot = new Snapshot(next, size + 1);
+    }
+
+    /**
+     * Called once a subscriber in this array has been invalidated, to compact the array when enough have been.
+     */
+    synchronized void onInvalidated() {
+        if (++mStaleCount * 2 > mSnapshot.size) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        Snapshot current = mSnapshot;
+
+        int valid = 0;
+        for (int i = 0; i < current.size; i++) {
+            if (current.subscribers[i].isValid()) {
+                valid++;
+            }
+        }
+
+        // Copy rather than compact in place, older snapshots may still be iterating the array
+        Subscriber[] next = new Subscriber[Math.max(MIN_CAPACITY, valid << 1)];
+        int index = 0;
+        for (int i = 0; i < current.size; i++) {
+            if (current.subscribers[i].isValid()) {
+                next[index++] = current.subscribers[i];
+            }
+        }
+
+        mSnapshot = valid == 0 ? EMPTY : new Snapshot(next, valid);
+        mStaleCount = 0;
+    }
+
+    /**
+     * The first {@code size} entries of {@code subscribers}, which never change once published.
+     */
+    static final class Snapshot {
+
+        @NonNull
+        final Subscriber[] subscribers;
+
+        final int size;
+
+
+        Snapshot(@NonNull Subscriber[] subscribers, int size) {
+            this.subscribers = subscribers;
+            this.size = size;
+        }
+    }
+}
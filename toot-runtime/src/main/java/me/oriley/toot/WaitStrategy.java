@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How {@link RingBufferBus} threads wait for the ring buffer, consumers when it is empty and posting threads when it
+ * is full. Trades CPU usage for latency.
+ */
+public enum WaitStrategy {
+
+    /**
+     * Spins without yielding the CPU. Lowest latency, but each consumer occupies a core even when idle.
+     */
+    BUSY_SPIN {
+        @Override
+        void idle(int attempt) {
+        }
+    },
+
+    /**
+     * Spins briefly, then yields to other threads between checks.
+     */
+    YIELD {
+        @Override
+        void idle(int attempt) {
+            if (attempt > SPIN_TRIES) {
+                Thread.yield();
+            }
+        }
+    },
+
+    /**
+     * Spins briefly, yields, then parks for short periods. Near zero CPU usage when idle, at the cost of up to
+     * {@value #PARK_NANOS} nanoseconds of added latency once parked.
+     */
+    PARK {
+        @Override
+        void idle(int attempt) {
+            if (attempt > SPIN_TRIES + YIELD_TRIES) {
+                LockSupport.parkNanos(PARK_NANOS);
+            } else if (attempt > SPIN_TRIES) {
+                Thread.yield();
+            }
+        }
+    };
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = 100000;
+
+
+    /**
+     * @param attempt how many times in a row the caller has found nothing to do
+     */
+    abstract void idle(int attempt);
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void smallValuesHaveExactBuckets() {
+        for (int value = 0; value < 16; value++) {
+            assertEquals(value, Histogram.bucketIndex(value));
+            assertEquals(value, Histogram.highestValueIn(value));
+        }
+    }
+
+    @Test
+    public void bucketsCoverValuesWithinRelativeError() {
+        int lastIndex = -1;
+        for (long value = 1; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+            int index = Histogram.bucketIndex(value);
+            long highest = Histogram.highestValueIn(index);
+            assertTrue("bucket for " + value + " ends before it at " + highest, highest >= value);
+            assertTrue("bucket for " + value + " ends too far above it at " + highest, highest - value <= value / 16);
+            assertTrue("buckets out of order at " + value, index > lastIndex);
+            lastIndex = index;
+        }
+        assertEquals(959, Histogram.bucketIndex(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, Histogram.highestValueIn(959));
+    }
+
+    @Test
+    public void snapshotReportsCountMeanMaxAndPercentiles() {
+        Histogram histogram = new Histogram();
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+        histogram.record(-5);
+
+        RecordingBusMetrics.Distribution distribution = histogram.snapshot();
+        assertEquals(101, distribution.count);
+        assertEquals(5050, distribution.sum);
+        assertEquals(100, distribution.max);
+        assertEquals(50, distribution.getMean(), 0.01);
+        assertEquals(0, distribution.getValueAtPercentile(0));
+        assertEquals(100, distribution.getValueAtPercentile(100));
+
+        long median = distribution.getValueAtPercentile(50);
+        assertTrue("median " + median, median >= 50 && median <= 53);
+    }
+
+    @Test
+    public void emptySnapshotReportsZero() {
+        RecordingBusMetrics.Distribution distribution = new Histogram().snapshot();
+        assertEquals(0, distribution.count);
+        assertEquals(0, distribution.getMean(), 0);
+        assertEquals(0, distribution.getValueAtPercentile(99));
+    }
+}
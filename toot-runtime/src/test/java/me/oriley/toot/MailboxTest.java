@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class MailboxTest {
+
+    private final Queue<Runnable> mTasks = new ArrayDeque<>();
+
+    private final Executor mExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+    };
+
+    private final List<Object> mReceived = new ArrayList<>();
+
+    private final Object mHost = new Object();
+
+    private Mailbox mMailbox;
+
+    private final Subscriber mSubscriber = new Subscriber(mHost, String.class, ThreadMode.BACKGROUND, 0, false, null) {
+        @Override
+        protected void onEvent(Object host, Object event) {
+            if ("throw".equals(event)) {
+                throw new IllegalStateException("Subscriber failed");
+            }
+            if ("reenter".equals(event)) {
+                mMailbox.offer("b", false);
+                mMailbox.offer("c", false);
+            }
+            mReceived.add(event);
+        }
+    };
+
+    private final Bus mBus = new Bus();
+
+
+    @Test
+    public void deliversInOrder() {
+        Mailbox mailbox = newMailbox(Integer.MAX_VALUE, OverflowPolicy.BLOCK);
+        mailbox.offer("a", false);
+        mailbox.offer("b", false);
+        mailbox.offer("c", false);
+
+        assertEquals(1, mTasks.size());
+        runTasks();
+        assertEquals(Arrays.<Object>asList("a", "b", "c"), mReceived);
+    }
+
+    @Test
+    public void reschedulesAfterSubscriberThrows() {
+        Mailbox mailbox = newMailbox(Integer.MAX_VALUE, OverflowPolicy.BLOCK);
+        mailbox.offer("throw", false);
+        mailbox.offer("b", false);
+
+        try {
+            mTasks.poll().run();
+            fail("Expected the subscriber's exception");
+        } catch (IllegalStateException expected) {
+            // The pending event must still be drained
+        }
+
+        mailbox.offer("c", false);
+        runTasks();
+        assertEquals(Arrays.<Object>asList("b", "c"), mReceived);
+        assertEquals(0, mailbox.size());
+    }
+
+    @Test
+    public void dropNewestDiscardsOffered() {
+        Mailbox mailbox = newMailbox(2, OverflowPolicy.DROP_NEWEST);
+        assertEquals(1, mailbox.offer("a", false));
+        assertEquals(2, mailbox.offer("b", false));
+        assertEquals(2, mailbox.offer("c", false));
+
+        runTasks();
+        assertEquals(Arrays.<Object>asList("a", "b"), mReceived);
+        assertEquals(1, mBus.getDroppedEventCount());
+    }
+
+    @Test
+    public void dropOldestDiscardsPending() {
+        Mailbox mailbox = newMailbox(2, OverflowPolicy.DROP_OLDEST);
+        mailbox.offer("a", false);
+        mailbox.offer("b", false);
+        mailbox.offer("c", false);
+
+        runTasks();
+        assertEquals(Arrays.<Object>asList("b", "c"), mReceived);
+        assertEquals(1, mBus.getDroppedEventCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failThrowsWhenFull() {
+        Mailbox mailbox = newMailbox(1, OverflowPolicy.FAIL);
+        mailbox.offer("a", false);
+        mailbox.offer("b", false);
+    }
+
+    @Test
+    public void coalesceReplacesPendingOfSameClass() {
+        Mailbox mailbox = newMailbox(Integer.MAX_VALUE, OverflowPolicy.BLOCK);
+        mailbox.offer("a", true);
+        assertEquals(1, mailbox.offer("b", true));
+
+        runTasks();
+        assertEquals(Arrays.<Object>asList("b"), mReceived);
+    }
+
+    @Test
+    public void drainingThreadQueuesPastCapacityWhenBlocking() {
+        mMailbox = newMailbox(1, OverflowPolicy.BLOCK);
+        mMailbox.offer("reenter", false);
+
+        runTasks();
+        assertEquals(Arrays.<Object>asList("reenter", "b", "c"), mReceived);
+        assertEquals(0, mBus.getDroppedEventCount());
+    }
+
+    @Test
+    public void drainingThreadStillBoundedByOtherPolicies() {
+        mMailbox = newMailbox(1, OverflowPolicy.DROP_NEWEST);
+        mMailbox.offer("reenter", false);
+
+        runTasks();
+        assertEquals(Arrays.<Object>asList("reenter", "b"), mReceived);
+        assertEquals(1, mBus.getDroppedEventCount());
+    }
+
+    private Mailbox newMailbox(int capacity, OverflowPolicy policy) {
+        return new Mailbox(mBus, mSubscriber, mExecutor, capacity, policy);
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = mTasks.poll()) != null) {
+            task.run();
+        }
+    }
+}
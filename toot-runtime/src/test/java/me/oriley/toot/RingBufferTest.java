@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RingBufferTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCapacityWhichIsNotPowerOfTwo() {
+        new RingBuffer(12);
+    }
+
+    @Test
+    public void pollsInOfferOrder() {
+        RingBuffer ring = new RingBuffer(4);
+        assertNull(ring.poll());
+        ring.offer("a");
+        ring.offer("b");
+
+        assertEquals(2, ring.size());
+        assertEquals("a", ring.poll());
+        assertEquals("b", ring.poll());
+        assertNull(ring.poll());
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void rejectsOfferWhenFull() {
+        RingBuffer ring = new RingBuffer(2);
+        assertTrue(ring.offer("a"));
+        assertTrue(ring.offer("b"));
+        assertFalse(ring.offer("c"));
+
+        assertEquals("a", ring.poll());
+        assertTrue(ring.offer("c"));
+        assertEquals("b", ring.poll());
+        assertEquals("c", ring.poll());
+    }
+
+    @Test
+    public void wrapsAroundManyTimes() {
+        RingBuffer ring = new RingBuffer(4);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(ring.offer(i));
+            assertTrue(ring.offer(-i));
+            assertEquals(i, ring.poll());
+            assertEquals(-i, ring.poll());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentProducersAndConsumersSeeEachEntryOnce() throws InterruptedException {
+        final RingBuffer ring = new RingBuffer(64);
+        final int producers = 2;
+        final int perProducer = 50000;
+        final AtomicIntegerArray seen = new AtomicIntegerArray(producers * perProducer);
+        final CountDownLatch consumed = new CountDownLatch(producers * perProducer);
+
+        Thread[] threads = new Thread[producers * 2];
+        for (int p = 0; p < producers; p++) {
+            final int offset = p * perProducer;
+            threads[p] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perProducer; i++) {
+                        while (!ring.offer(offset + i)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            };
+        }
+        for (int c = producers; c < threads.length; c++) {
+            threads[c] = new Thread() {
+                @Override
+                public void run() {
+                    while (consumed.getCount() > 0) {
+                        Object entry = ring.poll();
+                        if (entry == null) {
+                            Thread.yield();
+                        } else {
+                            seen.incrementAndGet((Integer) entry);
+                            consumed.countDown();
+                        }
+                    }
+                }
+            };
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 0; i < seen.length(); i++) {
+            assertEquals("entry " + i, 1, seen.get(i));
+        }
+        assertNull(ring.poll());
+    }
+}
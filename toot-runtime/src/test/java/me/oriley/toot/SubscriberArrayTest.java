@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2016 Kane O'Riley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.oriley.toot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SubscriberArrayTest {
+
+    private final List<Object> mHosts = new ArrayList<>();
+
+    private final SubscriberArray mArray = new SubscriberArray();
+
+
+    @Test
+    public void ordersByDescendingPriorityThenRegistration() {
+        Subscriber low = newSubscriber(-1);
+        Subscriber first = newSubscriber(0);
+        Subscriber high = newSubscriber(5);
+        Subscriber second = newSubscriber(0);
+        mArray.add(low);
+        mArray.add(first);
+        mArray.add(high);
+        mArray.add(second);
+
+        assertContents(mArray.snapshot(), high, first, second, low);
+    }
+
+    @Test
+    public void publishedSnapshotsAreUnchangedByLaterAdds() {
+        Subscriber first = newSubscriber(0);
+        mArray.add(first);
+        SubscriberArray.Snapshot before = mArray.snapshot();
+
+        Subscriber appended = newSubscriber(0);
+        Subscriber inserted = newSubscriber(1);
+        mArray.add(appended);
+        mArray.add(inserted);
+
+        assertContents(before, first);
+        assertContents(mArray.snapshot(), inserted, first, appended);
+    }
+
+    @Test
+    public void compactsOnceHalfInvalidated() {
+        Subscriber[] subscribers = new Subscriber[4];
+        for (int i = 0; i < subscribers.length; i++) {
+            subscribers[i] = newSubscriber(0);
+            mArray.add(subscribers[i]);
+        }
+        SubscriberArray.Snapshot before = mArray.snapshot();
+
+        subscribers[0].invalidate();
+        mArray.onInvalidated();
+        subscribers[2].invalidate();
+        mArray.onInvalidated();
+        assertSame(before, mArray.snapshot());
+
+        subscribers[3].invalidate();
+        mArray.onInvalidated();
+        assertContents(mArray.snapshot(), subscribers[1]);
+        assertContents(before, subscribers);
+    }
+
+    @Test
+    public void emptyOnceAllInvalidated() {
+        assertTrue(mArray.isEmpty());
+        Subscriber subscriber = newSubscriber(0);
+        mArray.add(subscriber);
+        assertFalse(mArray.isEmpty());
+
+        subscriber.invalidate();
+        assertTrue(mArray.isEmpty());
+        mArray.onInvalidated();
+        assertEquals(0, mArray.snapshot().size);
+    }
+
+    @Test
+    public void addsManyOfEqualPriority() {
+        int count = 100000;
+        for (int i = 0; i < count; i++) {
+            mArray.add(newSubscriber(0));
+        }
+        assertEquals(count, mArray.snapshot().size);
+    }
+
+    private Subscriber newSubscriber(int priority) {
+        Object host = new Object();
+        mHosts.add(host);
+        return new Subscriber(host, Object.class, ThreadMode.POSTING, priority, false, null) {
+            @Override
+            protected void onEvent(Object host, Object event) {
+            }
+        };
+    }
+
+    private static void assertContents(SubscriberArray.Snapshot snapshot, Subscriber... expected) {
+        assertEquals(expected.length, snapshot.size);
+        for (int i = 0; i < expected.length; i++) {
+            assertSame(expected[i], snapshot.subscribers[i]);
+        }
+    }
+}